@@ -0,0 +1,30 @@
+package fr.lucboutier.gwt.tasks.benchmarks;
+
+import fr.lucboutier.gwt.tasks.Task;
+
+/**
+ * CPU bound task which granularity is controlled by the number of iterations.
+ * 
+ * @author luc boutier
+ */
+public class BusyTask extends Task<Long> {
+	private final int iterations;
+
+	/**
+	 * Create a new busy task.
+	 * 
+	 * @param iterations The number of iterations of the computation loop.
+	 */
+	public BusyTask(int iterations) {
+		this.iterations = iterations;
+	}
+
+	@Override
+	public Long execute() {
+		long value = iterations;
+		for (int i = 0; i < iterations; i++) {
+			value = value * 6364136223846793005L + 1442695040888963407L;
+		}
+		return value;
+	}
+}
\ No newline at end of file
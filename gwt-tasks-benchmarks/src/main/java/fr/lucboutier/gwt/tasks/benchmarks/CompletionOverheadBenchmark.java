@@ -0,0 +1,86 @@
+package fr.lucboutier.gwt.tasks.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lucboutier.gwt.tasks.IJobCompletedCallback;
+import fr.lucboutier.gwt.tasks.IJobProgressListener;
+import fr.lucboutier.gwt.tasks.Job;
+import fr.lucboutier.gwt.tasks.Task;
+import fr.lucboutier.gwt.tasks.ThreadJobProcessor;
+
+/**
+ * Per task overhead of the {@link ThreadJobProcessor} completion path, measured with empty tasks. The average time per
+ * task should stay flat when the number of threads rises.
+ * 
+ * @author luc boutier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompletionOverheadBenchmark {
+	private static final int TASKS_PER_JOB = 4096;
+
+	@Param({ "1", "2", "4", "8", "16" })
+	private int threads;
+
+	@Param({ "false", "true" })
+	private boolean progressListener;
+
+	private ThreadJobProcessor processor;
+	private Task<?>[] tasks;
+
+	@Setup
+	public void setUp() {
+		processor = new ThreadJobProcessor(false, threads);
+		if (progressListener) {
+			processor.setProgressListener(new IJobProgressListener() {
+				@Override
+				public void onProgress(Job job, int completedTasks, int successTasks, int totalTasks) {
+				}
+			});
+		}
+		tasks = new Task<?>[TASKS_PER_JOB];
+		for (int i = 0; i < TASKS_PER_JOB; i++) {
+			tasks[i] = new BusyTask(0);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		processor.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TASKS_PER_JOB)
+	public Object[] completeEmptyTasks() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final Object[][] holder = new Object[1][];
+		processor.processJob(new Job(tasks, new IJobCompletedCallback() {
+			@Override
+			public void onCompleted(Object[] results) {
+				holder[0] = results;
+				latch.countDown();
+			}
+		}));
+		latch.await();
+		return holder[0];
+	}
+}
\ No newline at end of file
@@ -0,0 +1,41 @@
+package fr.lucboutier.gwt.tasks.benchmarks;
+
+import com.kfuntak.gwt.json.serialization.client.JsonSerializable;
+
+import fr.lucboutier.gwt.tasks.Task;
+
+/**
+ * Serializable task that carries a payload of a configurable size, used to measure serialization costs.
+ * 
+ * @author luc boutier
+ */
+public class PayloadTask extends Task<Integer> implements JsonSerializable {
+	private String payload;
+	private int offset;
+
+	@Override
+	public Integer execute() {
+		return payload.length() + offset;
+	}
+
+	/** Process a task message (id|parameters) as a worker does and return its reply. */
+	public String process(String message) {
+		return processMessage(message);
+	}
+
+	public String getPayload() {
+		return payload;
+	}
+
+	public void setPayload(String payload) {
+		this.payload = payload;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public void setOffset(int offset) {
+		this.offset = offset;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package fr.lucboutier.gwt.tasks.benchmarks;
+
+import fr.lucboutier.gwt.tasks.IPooledTask;
+import fr.lucboutier.gwt.tasks.Task;
+
+/**
+ * Pooled version of the {@link PayloadTask}: the parameters are read in place from the message (the payload is not
+ * copied) and the result is kept in a primitive field, so processing a task doesn't allocate.
+ * 
+ * @author luc boutier
+ */
+public class PooledPayloadTask extends Task<Void> implements IPooledTask {
+	private String payload;
+	private int offset;
+	// the message and the bounds of the payload in it, set by readParameters.
+	private String message;
+	private int payloadStart;
+	private int result;
+
+	@Override
+	public Void execute() {
+		int payloadLength = payload == null ? message.length() - payloadStart : payload.length();
+		result = payloadLength + offset;
+		return null;
+	}
+
+	@Override
+	public void writeParameters(StringBuilder buffer) {
+		buffer.append(offset).append(Task.TASK_ID_SEPARATOR).append(payload);
+	}
+
+	@Override
+	public void readParameters(String message, int parametersIndex) {
+		int value = 0;
+		int index = parametersIndex;
+		char c;
+		while ((c = message.charAt(index++)) != Task.TASK_ID_SEPARATOR) {
+			value = value * 10 + (c - '0');
+		}
+		this.offset = value;
+		this.payload = null;
+		this.message = message;
+		this.payloadStart = index;
+	}
+
+	@Override
+	public void writeResult(StringBuilder buffer) {
+		buffer.append(result);
+	}
+
+	@Override
+	public Object readResult(String result) {
+		return Integer.valueOf(result);
+	}
+
+	/** Process a task message (id|parameters) as a worker does and return its reply. */
+	public String process(String message) {
+		return processMessage(message);
+	}
+
+	public void setPayload(String payload) {
+		this.payload = payload;
+	}
+
+	public void setOffset(int offset) {
+		this.offset = offset;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package fr.lucboutier.gwt.tasks.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gwt.core.shared.GWT;
+import com.kfuntak.gwt.json.serialization.client.Serializer;
+
+import fr.lucboutier.gwt.tasks.IPooledTask;
+import fr.lucboutier.gwt.tasks.Task;
+
+/**
+ * Cost of the processing of a task message in a worker, with the JSON serialization of the task and with an
+ * {@link IPooledTask}. The messages go through the processing of the worker ({@link Task#onMessage} without the
+ * postMessage call), so the reply string built for each task is measured. Run with <code>-prof gc</code> to compare
+ * the allocation rate per task.
+ * 
+ * @author luc boutier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PooledTaskBenchmark {
+	/** Number of characters of the task payload. */
+	@Param({ "16", "1024" })
+	private int payloadSize;
+
+	private final Serializer serializer = GWT.create(Serializer.class);
+	private final PayloadTask jsonTask = new PayloadTask();
+	private final PooledPayloadTask pooledTask = new PooledPayloadTask();
+	private String jsonMessage;
+	private String pooledMessage;
+
+	@Setup
+	public void setUp() {
+		StringBuilder payload = new StringBuilder(payloadSize);
+		for (int i = 0; i < payloadSize; i++) {
+			payload.append((char) ('a' + i % 26));
+		}
+		PayloadTask task = new PayloadTask();
+		task.setPayload(payload.toString());
+		task.setOffset(payloadSize);
+		jsonMessage = "1" + Task.TASK_ID_SEPARATOR + serializer.serialize(task);
+
+		PooledPayloadTask source = new PooledPayloadTask();
+		source.setPayload(payload.toString());
+		source.setOffset(payloadSize);
+		StringBuilder buffer = new StringBuilder("1").append(Task.TASK_ID_SEPARATOR);
+		source.writeParameters(buffer);
+		pooledMessage = buffer.toString();
+	}
+
+	@Benchmark
+	public String json() {
+		return jsonTask.process(jsonMessage);
+	}
+
+	/**
+	 * The reply given to postMessage is the single allocation per task left, it is copied from the reused buffer on the
+	 * JVM.
+	 */
+	@Benchmark
+	public String pooled() {
+		return pooledTask.process(pooledMessage);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package fr.lucboutier.gwt.tasks.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gwt.core.shared.GWT;
+import com.kfuntak.gwt.json.serialization.client.Serializer;
+
+/**
+ * Cost of the JSON serialization of a {@link PayloadTask}, as done for each task sent to a web worker.
+ * 
+ * @author luc boutier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializerBenchmark {
+	/** Number of characters of the task payload. */
+	@Param({ "16", "1024", "65536" })
+	private int payloadSize;
+
+	private final Serializer serializer = GWT.create(Serializer.class);
+	private PayloadTask task;
+	private String serializedTask;
+
+	@Setup
+	public void setUp() {
+		StringBuilder payload = new StringBuilder(payloadSize);
+		for (int i = 0; i < payloadSize; i++) {
+			payload.append((char) ('a' + i % 26));
+		}
+		task = new PayloadTask();
+		task.setPayload(payload.toString());
+		task.setOffset(payloadSize);
+		serializedTask = serializer.serialize(task);
+	}
+
+	@Benchmark
+	public String serialize() {
+		return serializer.serialize(task);
+	}
+
+	@Benchmark
+	public Object deSerialize() {
+		return serializer.deSerialize(serializedTask, PayloadTask.class);
+	}
+
+	@Benchmark
+	public Object roundTrip() {
+		return serializer.deSerialize(serializer.serialize(task), PayloadTask.class);
+	}
+}
\ No newline at end of file
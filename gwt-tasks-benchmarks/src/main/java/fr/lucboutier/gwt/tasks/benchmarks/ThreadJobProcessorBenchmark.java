@@ -0,0 +1,82 @@
+package fr.lucboutier.gwt.tasks.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.lucboutier.gwt.tasks.IJobCompletedCallback;
+import fr.lucboutier.gwt.tasks.Job;
+import fr.lucboutier.gwt.tasks.Task;
+import fr.lucboutier.gwt.tasks.ThreadJobProcessor;
+
+/**
+ * Throughput and latency of the {@link ThreadJobProcessor} for different task granularities, thread counts and
+ * blocking modes. One operation is one task, the score is given per task.
+ * 
+ * @author luc boutier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadJobProcessorBenchmark {
+	private static final int TASKS_PER_JOB = 256;
+
+	/** Number of iterations of the task computation loop. */
+	@Param({ "10", "1000", "100000" })
+	private int granularity;
+
+	@Param({ "1", "2", "4", "8" })
+	private int threads;
+
+	/** <code>true</code> to let the processor block the calling thread, <code>false</code> to wait on the callback. */
+	@Param({ "true", "false" })
+	private boolean blocking;
+
+	private ThreadJobProcessor processor;
+	private Task<?>[] tasks;
+
+	@Setup
+	public void setUp() {
+		processor = new ThreadJobProcessor(blocking, threads);
+		tasks = new Task<?>[TASKS_PER_JOB];
+		for (int i = 0; i < TASKS_PER_JOB; i++) {
+			tasks[i] = new BusyTask(granularity);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		processor.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TASKS_PER_JOB)
+	public void processJob(final Blackhole blackhole) throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		processor.processJob(new Job(tasks, new IJobCompletedCallback() {
+			@Override
+			public void onCompleted(Object[] results) {
+				blackhole.consume(results);
+				latch.countDown();
+			}
+		}));
+		latch.await();
+	}
+}
\ No newline at end of file
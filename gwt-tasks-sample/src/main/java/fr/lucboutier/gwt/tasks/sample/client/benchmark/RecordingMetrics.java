@@ -0,0 +1,53 @@
+package fr.lucboutier.gwt.tasks.sample.client.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import fr.lucboutier.gwt.tasks.JobProcessorMetrics;
+
+/**
+ * Metrics that keeps every task latency to compute exact percentiles.
+ * 
+ * @author luc boutier
+ */
+public class RecordingMetrics extends JobProcessorMetrics {
+	private final List<Double> latencies = new ArrayList<Double>();
+	private long sentBytes = 0;
+
+	@Override
+	public void onTaskCompleted(String taskType, double latencyMillis, boolean success) {
+		latencies.add(latencyMillis);
+	}
+
+	@Override
+	public void onMessageSent(String taskType, double durationMillis, int messageLength) {
+		sentBytes += messageLength;
+	}
+
+	/** Forget all the recorded values. */
+	public void reset() {
+		latencies.clear();
+		sentBytes = 0;
+	}
+
+	/**
+	 * Get the latency for the given percentile.
+	 * 
+	 * @param percentile The percentile between 0 and 100.
+	 * @return The latency in milliseconds.
+	 */
+	public double getPercentile(double percentile) {
+		if (latencies.isEmpty()) {
+			return 0;
+		}
+		List<Double> sorted = new ArrayList<Double>(latencies);
+		Collections.sort(sorted);
+		int rank = (int) Math.ceil(sorted.size() * percentile / 100);
+		return sorted.get(Math.max(0, rank - 1));
+	}
+
+	public long getSentBytes() {
+		return sentBytes;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,182 @@
+package fr.lucboutier.gwt.tasks.sample.client.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.EntryPoint;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.PreElement;
+import com.google.gwt.user.client.Window;
+
+import fr.lucboutier.gwt.tasks.IJobCompletedCallback;
+import fr.lucboutier.gwt.tasks.Job;
+import fr.lucboutier.gwt.tasks.OverflowPolicy;
+import fr.lucboutier.gwt.tasks.Task;
+import fr.lucboutier.gwt.tasks.WebWorkerJobProcessor;
+import fr.lucboutier.gwt.tasks.sample.client.task.BenchmarkTask;
+
+/**
+ * Benchmark of the {@link WebWorkerJobProcessor}: worker bootstrap time, tasks per second and task latencies for
+ * several payload sizes and worker counts. Results are written as JSON in the <code>benchmark-results</code> element
+ * and in the <code>gwtTasksBenchmarkResults</code> window variable. The number of tasks per job can be set with the
+ * <code>tasks</code> URL parameter.
+ * 
+ * @author luc boutier
+ */
+public class WebWorkerBenchmark implements EntryPoint {
+	private static final Logger LOGGER = Logger.getLogger(WebWorkerBenchmark.class.getName());
+
+	private static final int[] PAYLOAD_SIZES = { 16, 1024, 65536 };
+	private static final int[] WORKER_COUNTS = { 1, 2, 4, 8 };
+	private static final int DEFAULT_TASKS_PER_JOB = 200;
+
+	private final List<Scenario> scenarios = new ArrayList<Scenario>();
+	private final StringBuilder json = new StringBuilder();
+	private int tasksPerJob = DEFAULT_TASKS_PER_JOB;
+
+	@Override
+	public void onModuleLoad() {
+		String tasksParameter = Window.Location.getParameter("tasks");
+		if (tasksParameter != null) {
+			tasksPerJob = Integer.parseInt(tasksParameter);
+		}
+		for (int payloadSize : PAYLOAD_SIZES) {
+			for (int workers : WORKER_COUNTS) {
+				scenarios.add(new Scenario(payloadSize, workers));
+			}
+		}
+		json.append("{\"userAgent\":\"").append(Window.Navigator.getUserAgent().replace("\"", "'"))
+				.append("\",\"tasksPerJob\":").append(tasksPerJob).append(",\"scenarios\":[");
+		runScenario(0);
+	}
+
+	private void runScenario(final int index) {
+		if (index == scenarios.size()) {
+			json.append("]}");
+			publishResults(json.toString());
+			return;
+		}
+		final Scenario scenario = scenarios.get(index);
+		scenario.run(new ScheduledCommand() {
+			@Override
+			public void execute() {
+				if (index > 0) {
+					json.append(',');
+				}
+				json.append(scenario.toJson());
+				LOGGER.info("Benchmark scenario " + (index + 1) + "/" + scenarios.size() + " completed");
+				// let the browser breathe between two scenarios.
+				Scheduler.get().scheduleDeferred(new ScheduledCommand() {
+					@Override
+					public void execute() {
+						runScenario(index + 1);
+					}
+				});
+			}
+		});
+	}
+
+	private void publishResults(String results) {
+		PreElement pre = Document.get().createPreElement();
+		pre.setId("benchmark-results");
+		pre.setInnerText(results);
+		Document.get().getBody().appendChild(pre);
+		setWindowResults(results);
+	}
+
+	private static native void setWindowResults(String results) /*-{
+		$wnd.gwtTasksBenchmarkResults = results;
+	}-*/;
+
+	private static Task<?>[] createTasks(int count, int payloadSize) {
+		StringBuilder payload = new StringBuilder(payloadSize);
+		for (int i = 0; i < payloadSize; i++) {
+			payload.append((char) ('a' + i % 26));
+		}
+		BenchmarkTask task = new BenchmarkTask();
+		task.setPayload(payload.toString());
+		Task<?>[] tasks = new Task<?>[count];
+		for (int i = 0; i < count; i++) {
+			tasks[i] = task;
+		}
+		return tasks;
+	}
+
+	/** A benchmark run for a given payload size and number of workers. */
+	private class Scenario {
+		private final int payloadSize;
+		private final int workers;
+		private final RecordingMetrics metrics = new RecordingMetrics();
+		private double coldStartMillis;
+		private double warmStartMillis;
+		private double jobMillis;
+
+		public Scenario(int payloadSize, int workers) {
+			this.payloadSize = payloadSize;
+			this.workers = workers;
+		}
+
+		public void run(final ScheduledCommand onDone) {
+			final WebWorkerJobProcessor processor = new WebWorkerJobProcessor(workers, Integer.MAX_VALUE,
+					OverflowPolicy.REJECT);
+			processor.setMetrics(metrics);
+			final Task<?>[] single = createTasks(1, payloadSize);
+			final double coldStart = Duration.currentTimeMillis();
+			// first task: includes the worker bootstrap.
+			processor.processJob(new Job(single, new IJobCompletedCallback() {
+				@Override
+				public void onCompleted(Object[] results) {
+					coldStartMillis = Duration.currentTimeMillis() - coldStart;
+					final double warmStart = Duration.currentTimeMillis();
+					// second task: same worker, already loaded.
+					processor.processJob(new Job(single, new IJobCompletedCallback() {
+						@Override
+						public void onCompleted(Object[] results) {
+							warmStartMillis = Duration.currentTimeMillis() - warmStart;
+							// spawn all the workers before measuring the throughput.
+							processor.processJob(new Job(createTasks(workers, payloadSize),
+									new IJobCompletedCallback() {
+										@Override
+										public void onCompleted(Object[] results) {
+											runMeasuredJob(processor, onDone);
+										}
+									}));
+						}
+					}));
+				}
+			}));
+		}
+
+		private void runMeasuredJob(final WebWorkerJobProcessor processor, final ScheduledCommand onDone) {
+			metrics.reset();
+			final double start = Duration.currentTimeMillis();
+			processor.processJob(new Job(createTasks(tasksPerJob, payloadSize), new IJobCompletedCallback() {
+				@Override
+				public void onCompleted(Object[] results) {
+					jobMillis = Duration.currentTimeMillis() - start;
+					processor.terminateIdleWorkers();
+					onDone.execute();
+				}
+			}));
+		}
+
+		public String toJson() {
+			StringBuilder builder = new StringBuilder();
+			builder.append("{\"payloadSize\":").append(payloadSize);
+			builder.append(",\"workers\":").append(workers);
+			builder.append(",\"tasksPerSecond\":").append(jobMillis == 0 ? 0 : tasksPerJob * 1000 / jobMillis);
+			builder.append(",\"latencyP50Millis\":").append(metrics.getPercentile(50));
+			builder.append(",\"latencyP99Millis\":").append(metrics.getPercentile(99));
+			builder.append(",\"coldStartMillis\":").append(coldStartMillis);
+			builder.append(",\"warmStartMillis\":").append(warmStartMillis);
+			builder.append(",\"bootstrapMillis\":").append(Math.max(0, coldStartMillis - warmStartMillis));
+			builder.append(",\"sentBytes\":").append(metrics.getSentBytes());
+			builder.append('}');
+			return builder.toString();
+		}
+	}
+}
\ No newline at end of file
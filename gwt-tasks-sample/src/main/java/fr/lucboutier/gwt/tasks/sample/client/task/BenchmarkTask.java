@@ -0,0 +1,27 @@
+package fr.lucboutier.gwt.tasks.sample.client.task;
+
+import com.kfuntak.gwt.json.serialization.client.JsonSerializable;
+
+import fr.lucboutier.gwt.tasks.Task;
+
+/**
+ * Task used by the web worker benchmark: it carries a payload of a configurable size and returns it's length.
+ * 
+ * @author luc boutier
+ */
+public class BenchmarkTask extends Task<Integer> implements JsonSerializable {
+	private String payload;
+
+	@Override
+	public Integer execute() {
+		return this.payload == null ? 0 : this.payload.length();
+	}
+
+	public String getPayload() {
+		return payload;
+	}
+
+	public void setPayload(String payload) {
+		this.payload = payload;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+/*
+ * Runs the WebWorkerJobProcessor benchmark (TasksBenchmark.html) in a headless browser and prints the JSON results.
+ *
+ * Usage: node browser-benchmark.js <webapp directory> [output file] [tasks per job]
+ *
+ * The webapp directory is the exploded war built by "mvn package" in gwt-tasks-sample
+ * (target/gwt-tasks-sample-<version>). Requires puppeteer (npm install puppeteer).
+ */
+var http = require('http');
+var fs = require('fs');
+var path = require('path');
+var puppeteer = require('puppeteer');
+
+var webappDir = process.argv[2];
+var outputFile = process.argv[3];
+var tasksPerJob = process.argv[4] || 200;
+var timeoutMillis = 30 * 60 * 1000;
+
+var contentTypes = {
+	'.html' : 'text/html',
+	'.js' : 'application/javascript',
+	'.css' : 'text/css',
+	'.png' : 'image/png',
+	'.gif' : 'image/gif'
+};
+
+if (!webappDir) {
+	console.error('Usage: node browser-benchmark.js <webapp directory> [output file] [tasks per job]');
+	process.exit(1);
+}
+
+var server = http.createServer(function(request, response) {
+	var file = path.join(webappDir, decodeURIComponent(request.url.split('?')[0]));
+	fs.readFile(file, function(error, data) {
+		if (error) {
+			response.writeHead(404);
+			response.end();
+			return;
+		}
+		response.writeHead(200, {
+			'Content-Type' : contentTypes[path.extname(file)] || 'application/octet-stream'
+		});
+		response.end(data);
+	});
+});
+
+server.listen(0, '127.0.0.1', function() {
+	var url = 'http://127.0.0.1:' + server.address().port + '/TasksBenchmark.html?tasks=' + tasksPerJob;
+	puppeteer.launch({
+		headless : true
+	}).then(function(browser) {
+		return browser.newPage().then(function(page) {
+			page.on('console', function(message) {
+				console.error('[browser] ' + message.text());
+			});
+			return page.goto(url).then(function() {
+				return page.waitForFunction('window.gwtTasksBenchmarkResults !== undefined', {
+					timeout : timeoutMillis
+				});
+			}).then(function() {
+				return page.evaluate('window.gwtTasksBenchmarkResults');
+			});
+		}).then(function(results) {
+			if (outputFile) {
+				fs.writeFileSync(outputFile, results);
+			}
+			console.log(results);
+			return browser.close();
+		}, function(error) {
+			browser.close();
+			throw error;
+		});
+	}).then(function() {
+		server.close();
+	}, function(error) {
+		console.error(error);
+		server.close();
+		process.exit(1);
+	});
+});
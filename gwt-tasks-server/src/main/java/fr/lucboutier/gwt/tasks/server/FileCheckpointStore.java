@@ -0,0 +1,128 @@
+package fr.lucboutier.gwt.tasks.server;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.lucboutier.gwt.tasks.ICheckpointLoadCallback;
+import fr.lucboutier.gwt.tasks.ICheckpointStore;
+import fr.lucboutier.gwt.tasks.Task;
+
+/**
+ * An {@link ICheckpointStore} that appends the results of each job to a file of a directory, so that they survive a
+ * JVM restart. Each result is written as an <code>index|result</code> line and flushed to the file system as soon as
+ * it is saved, a line truncated by a crash is ignored when the file is loaded. Results must not contain line breaks,
+ * which is the case of the JSON results.
+ * 
+ * @author luc boutier
+ */
+public class FileCheckpointStore implements ICheckpointStore {
+	private static final Logger LOGGER = Logger.getLogger(FileCheckpointStore.class.getName());
+
+	private static final String FILE_EXTENSION = ".checkpoint";
+	private static final char LINE_SEPARATOR = '\n';
+
+	private final Path directory;
+	// files of the jobs that are in progress.
+	private final Map<String, Writer> writers = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a new {@link FileCheckpointStore}.
+	 * 
+	 * @param directory The directory in which the checkpoint files are written, created if it doesn't exist.
+	 * @throws IOException In case the directory can't be created.
+	 */
+	public FileCheckpointStore(Path directory) throws IOException {
+		this.directory = Files.createDirectories(directory);
+	}
+
+	@Override
+	public void load(String jobId, ICheckpointLoadCallback callback) {
+		Map<Integer, String> results = new HashMap<>();
+		try {
+			String content = Files.readString(getFile(jobId), StandardCharsets.UTF_8);
+			int lineStart = 0;
+			int lineEnd;
+			// the last line is ignored if it is not terminated.
+			while ((lineEnd = content.indexOf(LINE_SEPARATOR, lineStart)) >= 0) {
+				int separatorIndex = content.indexOf(Task.TASK_ID_SEPARATOR, lineStart);
+				if (separatorIndex > lineStart && separatorIndex < lineEnd) {
+					int taskIndex = Integer.parseInt(content, lineStart, separatorIndex, 10);
+					results.put(taskIndex, content.substring(separatorIndex + 1, lineEnd));
+				}
+				lineStart = lineEnd + 1;
+			}
+		} catch (NoSuchFileException e) {
+			// the job has no checkpoint.
+		} catch (IOException | NumberFormatException e) {
+			LOGGER.log(Level.SEVERE, "Unable to read the checkpoint of job <" + jobId + ">, it is processed again", e);
+			results.clear();
+		}
+		callback.onLoaded(results);
+	}
+
+	@Override
+	public void save(String jobId, int taskIndex, String result) {
+		try {
+			Writer writer = writers.computeIfAbsent(jobId, this::openWriter);
+			synchronized (writer) {
+				writer.write(taskIndex + String.valueOf(Task.TASK_ID_SEPARATOR) + result + LINE_SEPARATOR);
+				writer.flush();
+			}
+		} catch (IOException | IllegalStateException e) {
+			// the task is processed again if the job is resumed.
+			LOGGER.log(Level.SEVERE, "Unable to save the result of task " + taskIndex + " of job <" + jobId + ">", e);
+		}
+	}
+
+	@Override
+	public void close(String jobId) {
+		try {
+			closeWriter(jobId);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Unable to close the checkpoint of job <" + jobId + ">", e);
+		}
+	}
+
+	@Override
+	public void delete(String jobId) {
+		try {
+			closeWriter(jobId);
+			Files.deleteIfExists(getFile(jobId));
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Unable to delete the checkpoint of job <" + jobId + ">", e);
+		}
+	}
+
+	private void closeWriter(String jobId) throws IOException {
+		Writer writer = writers.remove(jobId);
+		if (writer != null) {
+			synchronized (writer) {
+				writer.close();
+			}
+		}
+	}
+
+	private Writer openWriter(String jobId) {
+		try {
+			return Files.newBufferedWriter(getFile(jobId), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+					StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to open the checkpoint of job <" + jobId + ">", e);
+		}
+	}
+
+	private Path getFile(String jobId) {
+		return directory.resolve(URLEncoder.encode(jobId, StandardCharsets.UTF_8) + FILE_EXTENSION);
+	}
+}
\ No newline at end of file
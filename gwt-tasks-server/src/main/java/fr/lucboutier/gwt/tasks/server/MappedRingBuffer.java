@@ -0,0 +1,144 @@
+package fr.lucboutier.gwt.tasks.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single producer, single consumer ring buffer of messages in a memory-mapped file, used to exchange messages
+ * between two processes without pipes. The file starts with the write position and the read position (on their own
+ * cache lines), published with release/acquire semantic, followed by the data. Each message is written as it's length
+ * followed by it's UTF-8 bytes.
+ * 
+ * @author luc boutier
+ */
+class MappedRingBuffer implements Closeable {
+	private static final VarHandle POSITIONS = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.nativeOrder());
+	private static final int WRITE_POSITION_OFFSET = 0;
+	private static final int READ_POSITION_OFFSET = 64;
+	private static final int DATA_OFFSET = 128;
+	private static final int LENGTH_BYTES = 4;
+
+	private static final int SPIN_ITERATIONS = 1000;
+	private static final int YIELD_ITERATIONS = 1100;
+	private static final long PARK_NANOS = 50000;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	private final int mask;
+
+	/**
+	 * Map a ring buffer file, the file is created if it doesn't exists.
+	 * 
+	 * @param path The path of the file.
+	 * @param capacity The capacity of the data part of the buffer, must be a power of two.
+	 * @throws IOException In case the file can't be mapped.
+	 */
+	public MappedRingBuffer(Path path, int capacity) throws IOException {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two <" + capacity + ">.");
+		}
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+	}
+
+	/**
+	 * Write a message in the buffer.
+	 * 
+	 * @param message The message to write.
+	 * @return <code>false</code> if the buffer has not enough free space for the message.
+	 */
+	public boolean offer(String message) {
+		byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+		int size = LENGTH_BYTES + bytes.length;
+		if (size > capacity) {
+			throw new IllegalArgumentException("Message of <" + bytes.length + "> bytes exceeds the buffer capacity <"
+					+ capacity + ">.");
+		}
+		// the write position is only updated by this side.
+		long writePosition = (long) POSITIONS.get(buffer, WRITE_POSITION_OFFSET);
+		long readPosition = (long) POSITIONS.getAcquire(buffer, READ_POSITION_OFFSET);
+		if (capacity - (writePosition - readPosition) < size) {
+			return false;
+		}
+		byte[] length = new byte[] { (byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+				(byte) (bytes.length >>> 8), (byte) bytes.length };
+		write(writePosition, length);
+		write(writePosition + LENGTH_BYTES, bytes);
+		POSITIONS.setRelease(buffer, WRITE_POSITION_OFFSET, writePosition + size);
+		return true;
+	}
+
+	/**
+	 * Read a message from the buffer.
+	 * 
+	 * @return The message or <code>null</code> if the buffer is empty.
+	 */
+	public String poll() {
+		// the read position is only updated by this side.
+		long readPosition = (long) POSITIONS.get(buffer, READ_POSITION_OFFSET);
+		long writePosition = (long) POSITIONS.getAcquire(buffer, WRITE_POSITION_OFFSET);
+		if (writePosition == readPosition) {
+			return null;
+		}
+		byte[] length = read(readPosition, LENGTH_BYTES);
+		int messageLength = ((length[0] & 0xFF) << 24) | ((length[1] & 0xFF) << 16) | ((length[2] & 0xFF) << 8)
+				| (length[3] & 0xFF);
+		byte[] bytes = read(readPosition + LENGTH_BYTES, messageLength);
+		POSITIONS.setRelease(buffer, READ_POSITION_OFFSET, readPosition + LENGTH_BYTES + messageLength);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private void write(long position, byte[] bytes) {
+		int index = (int) (position & mask);
+		int firstPart = Math.min(bytes.length, capacity - index);
+		buffer.put(DATA_OFFSET + index, bytes, 0, firstPart);
+		if (firstPart < bytes.length) {
+			buffer.put(DATA_OFFSET, bytes, firstPart, bytes.length - firstPart);
+		}
+	}
+
+	private byte[] read(long position, int length) {
+		byte[] bytes = new byte[length];
+		int index = (int) (position & mask);
+		int firstPart = Math.min(length, capacity - index);
+		buffer.get(DATA_OFFSET + index, bytes, 0, firstPart);
+		if (firstPart < length) {
+			buffer.get(DATA_OFFSET, bytes, firstPart, length - firstPart);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Wait before the next attempt to read or write: spin first, then yield and finally park the thread.
+	 * 
+	 * @param iteration The number of attempts since the last successful read or write.
+	 */
+	public static void idle(int iteration) {
+		if (iteration < SPIN_ITERATIONS) {
+			Thread.onSpinWait();
+		} else if (iteration < YIELD_ITERATIONS) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,358 @@
+package fr.lucboutier.gwt.tasks.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gwt.core.shared.GWT;
+import com.kfuntak.gwt.json.serialization.client.JsonSerializable;
+import com.kfuntak.gwt.json.serialization.client.Serializer;
+
+import fr.lucboutier.gwt.tasks.IJobProcessor;
+import fr.lucboutier.gwt.tasks.Job;
+import fr.lucboutier.gwt.tasks.JobProcessorMetrics;
+import fr.lucboutier.gwt.tasks.Task;
+
+/**
+ * An {@link IJobProcessor} implementation that processes the tasks in a pool of child JVMs, the JVM equivalent of the
+ * web workers: a memory hungry task doesn't trigger GC pauses in the host application and a crash only affects the
+ * child. Tasks must be {@link JsonSerializable} and are exchanged with the children through memory-mapped ring buffers
+ * ({@link MappedRingBuffer}).
+ * 
+ * Children are recycled after a number of tasks or once their used heap exceeds a threshold, a child that doesn't
+ * respond within the task timeout is killed and replaced (the task fails). As for the web workers,
+ * the results of the job are the tasks as serialized by the children once executed (<code>null</code> for the failed
+ * tasks).
+ * 
+ * @author luc boutier
+ */
+public class ProcessJobProcessor implements IJobProcessor {
+	private static final Logger LOGGER = Logger.getLogger(ProcessJobProcessor.class.getName());
+
+	/** Capacity of the request and response buffers of each child. */
+	public static final int BUFFER_CAPACITY = 1 << 22;
+	/** Default time given to a child to process a task before it is killed. */
+	public static final long DEFAULT_TASK_TIMEOUT_MILLIS = 5 * 60 * 1000;
+	private static final long EXIT_TIMEOUT_SECONDS = 5;
+	// the child process is checked every 1024 attempts while waiting for it.
+	private static final int ALIVE_CHECK_MASK = 1023;
+
+	private final Serializer serializer = GWT.create(Serializer.class);
+
+	private final int maxTasksPerProcess;
+	private final long maxHeapUsedBytes;
+	private final long taskTimeoutMillis;
+	private final List<String> jvmArguments;
+	private final String classPath;
+	private final BlockingQueue<ProcessTask> pendingTasks = new LinkedBlockingQueue<ProcessTask>();
+	private final List<Thread> dispatchers = new ArrayList<Thread>();
+	private volatile boolean shutdown = false;
+	private volatile JobProcessorMetrics metrics = JobProcessorMetrics.NO_OP;
+
+	/**
+	 * Create a {@link ProcessJobProcessor} with as many child processes as CPUs, recycled every 1000 tasks, the default
+	 * task timeout and the class path of the host JVM.
+	 */
+	public ProcessJobProcessor() {
+		this(Runtime.getRuntime().availableProcessors(), 1000, 0, DEFAULT_TASK_TIMEOUT_MILLIS, new ArrayList<String>(),
+				System.getProperty("java.class.path"));
+	}
+
+	/**
+	 * Create a new {@link ProcessJobProcessor}.
+	 * 
+	 * @param processes The number of child processes.
+	 * @param maxTasksPerProcess The number of tasks after which a child is recycled.
+	 * @param maxHeapUsedBytes The used heap after which a child is recycled, 0 to disable.
+	 * @param taskTimeoutMillis The time in ms after which a child still processing a task is killed and replaced, 0 to
+	 *            wait as long as the child is alive.
+	 * @param jvmArguments The arguments of the child JVMs (-Xmx...).
+	 * @param classPath The class path of the child JVMs, it must contain gwt-tasks-server and the tasks classes. The
+	 *            class path of the host JVM doesn't in servlet containers and other hosts with their own class loaders.
+	 */
+	public ProcessJobProcessor(int processes, int maxTasksPerProcess, long maxHeapUsedBytes, long taskTimeoutMillis,
+			List<String> jvmArguments, String classPath) {
+		if (classPath == null || classPath.isEmpty()) {
+			throw new IllegalArgumentException("The class path of the child processes is required.");
+		}
+		this.maxTasksPerProcess = maxTasksPerProcess;
+		this.maxHeapUsedBytes = maxHeapUsedBytes;
+		this.taskTimeoutMillis = Math.max(0, taskTimeoutMillis);
+		this.jvmArguments = new ArrayList<String>(jvmArguments);
+		this.classPath = classPath;
+		for (int i = 0; i < processes; i++) {
+			Thread dispatcher = new Thread(new Dispatcher(), "gwt-tasks-process-" + (i + 1));
+			dispatchers.add(dispatcher);
+			dispatcher.start();
+		}
+	}
+
+	/**
+	 * Set the metrics that will receive the processor events.
+	 * 
+	 * @param metrics The metrics to use, {@link JobProcessorMetrics#NO_OP} to disable instrumentation.
+	 */
+	public void setMetrics(JobProcessorMetrics metrics) {
+		this.metrics = metrics == null ? JobProcessorMetrics.NO_OP : metrics;
+	}
+
+	/**
+	 * Stop the child processes, pending jobs are not completed.
+	 */
+	public void shutdown() {
+		shutdown = true;
+		for (Thread dispatcher : dispatchers) {
+			dispatcher.interrupt();
+		}
+	}
+
+	@Override
+	public void processJob(final Job job) {
+		final Task<?>[] tasks = job.getTasks();
+		if (tasks.length == 0) {
+			job.getCallback().onCompleted(new Object[0]);
+			return;
+		}
+		if (shutdown) {
+			throw new IllegalStateException("The job processor has been shutdown.");
+		}
+		ProcessJob processJob = new ProcessJob(job);
+		for (int i = 0; i < tasks.length; i++) {
+			if (!(tasks[i] instanceof JsonSerializable)) {
+				throw new IllegalArgumentException("Task <" + tasks[i].getClass().getName()
+						+ "> must be JsonSerializable to be processed in a child process.");
+			}
+		}
+		for (int i = 0; i < tasks.length; i++) {
+			pendingTasks.add(new ProcessTask(processJob, i));
+		}
+		metrics.onQueueDepth(pendingTasks.size());
+	}
+
+	private void onTaskCompleted(ProcessJob processJob, int taskIndex, Object result) {
+		processJob.results[taskIndex] = result;
+		int completed = processJob.completedCount.incrementAndGet();
+		if (LOGGER.isLoggable(Level.FINER)) {
+			LOGGER.finer("Completed " + completed + " tasks on " + processJob.results.length);
+		}
+		if (completed == processJob.results.length) {
+			processJob.job.getCallback().onCompleted(processJob.results);
+		}
+	}
+
+	/** Processing state of a job. */
+	private static class ProcessJob {
+		private final Job job;
+		private final Object[] results;
+		private final AtomicInteger completedCount = new AtomicInteger();
+
+		public ProcessJob(Job job) {
+			this.job = job;
+			this.results = new Object[job.getTasks().length];
+		}
+	}
+
+	/** A task waiting for a child process. */
+	private static class ProcessTask {
+		private final ProcessJob processJob;
+		private final int taskIndex;
+
+		public ProcessTask(ProcessJob processJob, int taskIndex) {
+			this.processJob = processJob;
+			this.taskIndex = taskIndex;
+		}
+	}
+
+	/** Thread that feeds a child process with the pending tasks, one at a time, and recycles it. */
+	private class Dispatcher implements Runnable {
+		private ChildProcess child;
+		private int taskId = 0;
+
+		@Override
+		public void run() {
+			try {
+				while (!shutdown) {
+					ProcessTask processTask = pendingTasks.poll(1, TimeUnit.SECONDS);
+					if (processTask != null) {
+						process(processTask);
+					}
+				}
+			} catch (InterruptedException e) {
+				// shutdown
+			} finally {
+				if (child != null) {
+					child.close();
+				}
+			}
+		}
+
+		private void process(ProcessTask processTask) {
+			final JobProcessorMetrics currentMetrics = metrics;
+			final Task<?> task = processTask.processJob.job.getTasks()[processTask.taskIndex];
+			final long start = System.nanoTime();
+			Object result = null;
+			boolean success = false;
+			try {
+				if (child == null) {
+					child = new ChildProcess(jvmArguments, classPath);
+					currentMetrics.onWorkerSpawned(child.name);
+				}
+				String id = String.valueOf(taskId++);
+				String response = child.execute(id, id + Task.TASK_ID_SEPARATOR + task.getClass().getName()
+						+ Task.TASK_ID_SEPARATOR + serializer.serialize(task), taskTimeoutMillis);
+				success = response.startsWith(Task.TASK_COMPLETED_FLAG);
+				int flagLength = success ? Task.TASK_COMPLETED_FLAG.length() : Task.TASK_ERROR_FLAG.length();
+				int idEnd = response.indexOf(Task.TASK_ID_SEPARATOR, flagLength);
+				int heapEnd = response.indexOf(Task.TASK_ID_SEPARATOR, idEnd + 1);
+				long heapUsed = Long.parseLong(response.substring(idEnd + 1, heapEnd));
+				String data = response.substring(heapEnd + 1);
+				if (success) {
+					result = serializer.deSerialize(data, task.getClass());
+				} else {
+					LOGGER.severe("Task <" + task.getClass().getName() + "> failed with message <" + data + ">");
+				}
+				if (child.processedTasks >= maxTasksPerProcess
+						|| (maxHeapUsedBytes > 0 && heapUsed > maxHeapUsedBytes)) {
+					recycle();
+				}
+			} catch (IOException e) {
+				LOGGER.log(Level.SEVERE, "Child process failed while processing task", e);
+				recycle();
+			} catch (RuntimeException e) {
+				// task too large for the ring buffer, serialization error or malformed response: only this task fails
+				// and the child, which state is unknown, is replaced.
+				LOGGER.log(Level.SEVERE, "Unable to process task <" + task.getClass().getName() + ">", e);
+				result = null;
+				success = false;
+				recycle();
+			}
+			currentMetrics.onTaskCompleted(task.getClass().getName(), (System.nanoTime() - start) / 1000000d, success);
+			onTaskCompleted(processTask.processJob, processTask.taskIndex, result);
+		}
+
+		private void recycle() {
+			if (child != null) {
+				child.close();
+				metrics.onWorkerTerminated(child.name);
+				child = null;
+			}
+		}
+	}
+
+	/** A child JVM and it's ring buffers. */
+	private static class ChildProcess {
+		private final Path requestPath;
+		private final Path responsePath;
+		private final MappedRingBuffer requests;
+		private final MappedRingBuffer responses;
+		private final Process process;
+		private final String name;
+		private int processedTasks = 0;
+
+		public ChildProcess(List<String> jvmArguments, String classPath) throws IOException {
+			requestPath = Files.createTempFile("gwt-tasks-request-", ".ring");
+			responsePath = Files.createTempFile("gwt-tasks-response-", ".ring");
+			requests = new MappedRingBuffer(requestPath, BUFFER_CAPACITY);
+			responses = new MappedRingBuffer(responsePath, BUFFER_CAPACITY);
+
+			List<String> command = new ArrayList<String>();
+			command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+			command.addAll(jvmArguments);
+			command.add("-cp");
+			command.add(classPath);
+			command.add(ProcessWorker.class.getName());
+			command.add(requestPath.toString());
+			command.add(responsePath.toString());
+			command.add(String.valueOf(BUFFER_CAPACITY));
+			command.add(String.valueOf(ProcessHandle.current().pid()));
+			process = new ProcessBuilder(command).inheritIO().start();
+			name = "gwt-tasks-process-" + process.pid();
+		}
+
+		/**
+		 * Send a task to the child and wait for the response, the responses that don't echo the id of the task are
+		 * discarded.
+		 * 
+		 * @param id The id of the task.
+		 * @param request The task message.
+		 * @param timeoutMillis The time in ms given to the child to respond, 0 to wait as long as it is alive.
+		 * @throws IOException if the child process exits before sending the response or is killed as it didn't respond
+		 *             in time.
+		 */
+		public String execute(String id, String request, long timeoutMillis) throws IOException {
+			long start = System.nanoTime();
+			int attempt = 0;
+			while (!requests.offer(request)) {
+				checkAlive(attempt, start, timeoutMillis);
+				MappedRingBuffer.idle(attempt++);
+			}
+			attempt = 0;
+			String response = responses.poll();
+			while (response == null || !isResponse(response, id)) {
+				if (response != null) {
+					LOGGER.warning("Discarding a stale response while waiting for task <" + id + ">");
+				}
+				checkAlive(attempt, start, timeoutMillis);
+				MappedRingBuffer.idle(attempt++);
+				response = responses.poll();
+			}
+			processedTasks++;
+			return response;
+		}
+
+		private static boolean isResponse(String response, String id) {
+			int flagLength;
+			if (response.startsWith(Task.TASK_COMPLETED_FLAG)) {
+				flagLength = Task.TASK_COMPLETED_FLAG.length();
+			} else if (response.startsWith(Task.TASK_ERROR_FLAG)) {
+				flagLength = Task.TASK_ERROR_FLAG.length();
+			} else {
+				return false;
+			}
+			return response.startsWith(id, flagLength)
+					&& response.indexOf(Task.TASK_ID_SEPARATOR, flagLength) == flagLength + id.length();
+		}
+
+		private void checkAlive(int attempt, long start, long timeoutMillis) throws IOException {
+			if ((attempt & ALIVE_CHECK_MASK) != ALIVE_CHECK_MASK) {
+				return;
+			}
+			if (!process.isAlive()) {
+				throw new IOException("Child process exited with code <" + process.exitValue() + ">.");
+			}
+			if (timeoutMillis > 0 && System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+				// the child is hung, it won't read the exit message.
+				process.destroyForcibly();
+				throw new IOException("Child process didn't respond within <" + timeoutMillis + "> ms, killed.");
+			}
+		}
+
+		public void close() {
+			if (process.isAlive() && requests.offer(ProcessWorker.EXIT_MESSAGE)) {
+				try {
+					process.waitFor(EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			process.destroyForcibly();
+			try {
+				requests.close();
+				responses.close();
+				Files.deleteIfExists(requestPath);
+				Files.deleteIfExists(responsePath);
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Unable to delete child process buffers", e);
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+package fr.lucboutier.gwt.tasks.server;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.google.gwt.core.shared.GWT;
+import com.kfuntak.gwt.json.serialization.client.Serializer;
+
+import fr.lucboutier.gwt.tasks.Task;
+
+/**
+ * Main class of the child JVMs of the {@link ProcessJobProcessor}, the JVM equivalent of a web worker. The child reads
+ * the tasks from the request ring buffer (<code>id|className|task</code>), processes them one at a time and writes the
+ * results in the response ring buffer (<code>TC::id|heapUsed|task</code> or <code>TERR::id|heapUsed|message</code>)
+ * so that the parent can recycle it once it uses too much memory.
+ * 
+ * Arguments: request buffer path, response buffer path, buffers capacity, parent process id.
+ * 
+ * @author luc boutier
+ */
+public final class ProcessWorker {
+	/** Message sent by the parent to stop the child. */
+	static final String EXIT_MESSAGE = "exit!";
+	// number of idle iterations between two checks of the parent process.
+	private static final int PARENT_CHECK_ITERATIONS = 20000;
+
+	private ProcessWorker() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		Path requestPath = Paths.get(args[0]);
+		Path responsePath = Paths.get(args[1]);
+		int capacity = Integer.parseInt(args[2]);
+		long parentPid = Long.parseLong(args[3]);
+		Serializer serializer = GWT.create(Serializer.class);
+
+		try (MappedRingBuffer requests = new MappedRingBuffer(requestPath, capacity);
+				MappedRingBuffer responses = new MappedRingBuffer(responsePath, capacity)) {
+			int idleIterations = 0;
+			while (true) {
+				String request = requests.poll();
+				if (request == null) {
+					if (idleIterations % PARENT_CHECK_ITERATIONS == 0 && !isAlive(parentPid)) {
+						return; // the parent died without stopping the child.
+					}
+					MappedRingBuffer.idle(idleIterations++);
+					continue;
+				}
+				idleIterations = 0;
+				if (EXIT_MESSAGE.equals(request)) {
+					return;
+				}
+				String response = process(request, serializer);
+				int attempt = 0;
+				while (!responses.offer(response)) {
+					MappedRingBuffer.idle(attempt++);
+				}
+			}
+		}
+	}
+
+	private static boolean isAlive(long pid) {
+		return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+	}
+
+	private static String process(String request, Serializer serializer) {
+		int idEnd = request.indexOf(Task.TASK_ID_SEPARATOR);
+		int classNameEnd = request.indexOf(Task.TASK_ID_SEPARATOR, idEnd + 1);
+		String id = request.substring(0, idEnd);
+		String flag;
+		String data;
+		try {
+			Class<?> taskClass = Class.forName(request.substring(idEnd + 1, classNameEnd));
+			Task<?> task = (Task<?>) serializer.deSerialize(request.substring(classNameEnd + 1), taskClass);
+			task.execute();
+			flag = Task.TASK_COMPLETED_FLAG;
+			data = serializer.serialize(task);
+		} catch (Throwable t) {
+			flag = Task.TASK_ERROR_FLAG;
+			data = t.getClass().getName() + ": " + t.getMessage();
+		}
+		Runtime runtime = Runtime.getRuntime();
+		long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+		return flag + id + Task.TASK_ID_SEPARATOR + heapUsed + Task.TASK_ID_SEPARATOR + data;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,161 @@
+package fr.lucboutier.gwt.tasks.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.lucboutier.gwt.tasks.IResultStore;
+import fr.lucboutier.gwt.tasks.IResultStoreFactory;
+
+/**
+ * An {@link IResultStore} that keeps the results of a job on heap until their serialized size exceeds a budget, the
+ * next results are serialized to a temporary file and read back lazily when they are requested. The heap used by the
+ * results of a job is so bounded whatever the number and size of it's tasks. Results that are not
+ * {@link Serializable} are always kept on heap.
+ * 
+ * @author luc boutier
+ */
+public class SpillingResultStore implements IResultStore {
+	private static final Logger LOGGER = Logger.getLogger(SpillingResultStore.class.getName());
+
+	private final long heapBudgetBytes;
+	private final Path directory;
+	// results kept on heap.
+	private final Object[] values;
+	// position and length in the spill file of the spilled results, length is 0 for the results kept on heap.
+	private final long[] offsets;
+	private final int[] lengths;
+	private final AtomicLong heapBytes = new AtomicLong();
+	private final AtomicLong filePosition = new AtomicLong();
+	// spill file, opened when the first result is spilled.
+	private FileChannel channel;
+	private boolean released = false;
+
+	/**
+	 * Create a new {@link SpillingResultStore}.
+	 * 
+	 * @param size The number of tasks of the job.
+	 * @param heapBudgetBytes The serialized size of the results kept on heap.
+	 * @param directory The directory in which the spill file is created.
+	 */
+	public SpillingResultStore(int size, long heapBudgetBytes, Path directory) {
+		this.heapBudgetBytes = heapBudgetBytes;
+		this.directory = directory;
+		this.values = new Object[size];
+		this.offsets = new long[size];
+		this.lengths = new int[size];
+	}
+
+	/**
+	 * Get a factory that creates a {@link SpillingResultStore} for each job.
+	 * 
+	 * @param heapBudgetBytes The serialized size of the results of each job kept on heap.
+	 * @param directory The directory in which the spill files are created.
+	 * @return The factory to set on the job processor.
+	 */
+	public static IResultStoreFactory factory(long heapBudgetBytes, Path directory) {
+		return size -> new SpillingResultStore(size, heapBudgetBytes, directory);
+	}
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+	@Override
+	public void set(int taskIndex, Object result) {
+		if (!(result instanceof Serializable)) {
+			values[taskIndex] = result;
+			return;
+		}
+		try {
+			byte[] bytes = serialize(result);
+			if (heapBytes.addAndGet(bytes.length) <= heapBudgetBytes) {
+				values[taskIndex] = result;
+				return;
+			}
+			heapBytes.addAndGet(-bytes.length);
+			long position = filePosition.getAndAdd(bytes.length);
+			FileChannel fileChannel = getChannel();
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			while (buffer.hasRemaining()) {
+				fileChannel.write(buffer, position + buffer.position());
+			}
+			offsets[taskIndex] = position;
+			lengths[taskIndex] = bytes.length;
+		} catch (IOException e) {
+			// the job must complete anyway.
+			LOGGER.log(Level.WARNING, "Unable to spill the result of task " + taskIndex + ", it is kept on heap", e);
+			values[taskIndex] = result;
+		}
+	}
+
+	@Override
+	public Object get(int taskIndex) {
+		if (lengths[taskIndex] == 0) {
+			return values[taskIndex];
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(lengths[taskIndex]);
+		try {
+			FileChannel fileChannel = getChannel();
+			while (buffer.hasRemaining()) {
+				if (fileChannel.read(buffer, offsets[taskIndex] + buffer.position()) < 0) {
+					throw new IOException("Unexpected end of the spill file");
+				}
+			}
+			try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(buffer.array()))) {
+				return input.readObject();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read the result of task " + taskIndex, e);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException("Unable to read the result of task " + taskIndex, e);
+		}
+	}
+
+	@Override
+	public synchronized void release() {
+		released = true;
+		if (channel != null) {
+			try {
+				// the file is deleted on close.
+				channel.close();
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Unable to delete the spill file", e);
+			}
+			channel = null;
+		}
+	}
+
+	private synchronized FileChannel getChannel() throws IOException {
+		if (released) {
+			throw new IllegalStateException("The results have been released");
+		}
+		if (channel == null) {
+			Path file = Files.createTempFile(Files.createDirectories(directory), "results-", ".spill");
+			channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.DELETE_ON_CLOSE);
+		}
+		return channel;
+	}
+
+	private static byte[] serialize(Object result) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+			output.writeObject(result);
+		}
+		return bytes.toByteArray();
+	}
+}
\ No newline at end of file
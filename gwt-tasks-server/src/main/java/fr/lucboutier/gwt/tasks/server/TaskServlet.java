@@ -0,0 +1,210 @@
+package fr.lucboutier.gwt.tasks.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.gwt.core.shared.GWT;
+import com.kfuntak.gwt.json.serialization.client.JsonSerializable;
+import com.kfuntak.gwt.json.serialization.client.Serializer;
+
+import fr.lucboutier.gwt.tasks.IJobCompletedCallback;
+import fr.lucboutier.gwt.tasks.Job;
+import fr.lucboutier.gwt.tasks.RemoteJobProcessor;
+import fr.lucboutier.gwt.tasks.Task;
+import fr.lucboutier.gwt.tasks.ThreadJobProcessor;
+
+/**
+ * Server endpoint of the {@link RemoteJobProcessor}: tasks posted by the browser are processed by a
+ * {@link ThreadJobProcessor} and the results are streamed back in batches as they are completed.
+ * 
+ * Init parameters:
+ * <ul>
+ * <li>threads: number of threads of the processor (default to the number of CPUs).</li>
+ * <li>batchSize: maximum number of results written before the response is flushed (default 32), a partial batch is
+ * flushed as soon as no result is pending.</li>
+ * <li>allowedPackages: comma separated list of the packages of the tasks that can be processed, <code>*</code> to
+ * allow all the {@link JsonSerializable} tasks of the classpath. Required: without it all the tasks are rejected.</li>
+ * </ul>
+ * 
+ * @author luc boutier
+ */
+public class TaskServlet extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOGGER = Logger.getLogger(TaskServlet.class.getName());
+
+	private static final int DEFAULT_BATCH_SIZE = 32;
+	private static final String ALL_PACKAGES = "*";
+
+	private final Serializer serializer = GWT.create(Serializer.class);
+
+	private ThreadJobProcessor processor;
+	private int batchSize;
+	// packages of the tasks that can be processed, null if all the tasks are allowed.
+	private String[] allowedPackages;
+
+	@Override
+	public void init() throws ServletException {
+		String threads = getInitParameter("threads");
+		processor = new ThreadJobProcessor(false, threads == null ? Runtime.getRuntime().availableProcessors()
+				: Integer.parseInt(threads));
+		String batchSizeParameter = getInitParameter("batchSize");
+		batchSize = batchSizeParameter == null ? DEFAULT_BATCH_SIZE : Integer.parseInt(batchSizeParameter);
+		String allowedPackagesParameter = getInitParameter("allowedPackages");
+		if (allowedPackagesParameter == null || allowedPackagesParameter.trim().isEmpty()) {
+			LOGGER.warning("No allowedPackages init parameter, all the tasks will be rejected.");
+			allowedPackages = new String[0];
+		} else if (ALL_PACKAGES.equals(allowedPackagesParameter.trim())) {
+			allowedPackages = null;
+		} else {
+			allowedPackages = allowedPackagesParameter.trim().split("\\s*,\\s*");
+		}
+	}
+
+	@Override
+	public void destroy() {
+		processor.shutdown();
+	}
+
+	@Override
+	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+			IOException {
+		final BlockingQueue<String> replies = new LinkedBlockingQueue<String>();
+		List<ServerTask> serverTasks = new ArrayList<ServerTask>();
+		int taskCount = 0;
+
+		BufferedReader reader = request.getReader();
+		String line = reader.readLine();
+		while (line != null) {
+			if (!line.isEmpty()) {
+				taskCount++;
+				readTask(line, serverTasks, replies);
+			}
+			line = reader.readLine();
+		}
+
+		for (final ServerTask serverTask : serverTasks) {
+			processor.processJob(new Job(new Task<?>[] { serverTask }, new IJobCompletedCallback() {
+				@Override
+				public void onCompleted(Object[] results) {
+					replies.add(serverTask.getReply());
+				}
+			}));
+		}
+
+		response.setContentType(RemoteJobProcessor.CONTENT_TYPE);
+		PrintWriter writer = response.getWriter();
+		int batchCount = 0;
+		try {
+			for (int i = 0; i < taskCount; i++) {
+				String reply = replies.poll();
+				if (reply == null) {
+					// no result is pending, send the current batch before waiting.
+					if (batchCount > 0) {
+						writer.flush();
+						batchCount = 0;
+					}
+					reply = replies.take();
+				}
+				writer.print(reply);
+				writer.print(RemoteJobProcessor.LINE_SEPARATOR);
+				batchCount++;
+				if (batchCount == batchSize) {
+					writer.flush();
+					batchCount = 0;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServletException("Interrupted while waiting for task results.", e);
+		}
+		writer.flush();
+	}
+
+	/** Read a task line (index|className|task), errors are added to the replies. */
+	private void readTask(String line, List<ServerTask> serverTasks, BlockingQueue<String> replies) {
+		int indexEnd = line.indexOf(Task.TASK_ID_SEPARATOR);
+		int classNameEnd = line.indexOf(Task.TASK_ID_SEPARATOR, indexEnd + 1);
+		if (indexEnd < 0 || classNameEnd < 0) {
+			replies.add(Task.TASK_ERROR_FLAG + "-1" + Task.TASK_ID_SEPARATOR + "Malformed task line");
+			return;
+		}
+		String index = line.substring(0, indexEnd);
+		String className = line.substring(indexEnd + 1, classNameEnd);
+		try {
+			Class<?> taskClass = Class.forName(className, false, Thread.currentThread().getContextClassLoader());
+			if (!Task.class.isAssignableFrom(taskClass) || !JsonSerializable.class.isAssignableFrom(taskClass)
+					|| !isAllowed(className)) {
+				throw new IllegalArgumentException("Task class <" + className + "> is not allowed.");
+			}
+			Task<?> task = (Task<?>) serializer.deSerialize(line.substring(classNameEnd + 1), taskClass);
+			serverTasks.add(new ServerTask(index, task));
+		} catch (Exception e) {
+			LOGGER.log(Level.WARNING, "Unable to read task " + className, e);
+			replies.add(errorReply(index, e));
+		}
+	}
+
+	private boolean isAllowed(String className) {
+		if (allowedPackages == null) {
+			return true; // explicitly allowed with *.
+		}
+		for (String allowedPackage : allowedPackages) {
+			if (className.startsWith(allowedPackage + ".")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String errorReply(String index, Throwable t) {
+		String message = String.valueOf(t.getMessage()).replace(RemoteJobProcessor.LINE_SEPARATOR, ' ');
+		return Task.TASK_ERROR_FLAG + index + Task.TASK_ID_SEPARATOR + message;
+	}
+
+	/** Wraps a task received from the browser to report it's failure. */
+	private class ServerTask extends Task<Object> {
+		private final String index;
+		private final Task<?> task;
+		private Throwable error;
+
+		public ServerTask(String index, Task<?> task) {
+			this.index = index;
+			this.task = task;
+		}
+
+		@Override
+		public Object execute() {
+			try {
+				task.execute();
+			} catch (Throwable t) {
+				LOGGER.log(Level.SEVERE, "Error while processing task", t);
+				error = t;
+			}
+			return null;
+		}
+
+		/** Get the line to send back to the browser, the task is serialized as in the web workers. */
+		public String getReply() {
+			if (error != null) {
+				return errorReply(index, error);
+			}
+			try {
+				return Task.TASK_COMPLETED_FLAG + index + Task.TASK_ID_SEPARATOR + serializer.serialize(task);
+			} catch (RuntimeException e) {
+				return errorReply(index, e);
+			}
+		}
+	}
+}
\ No newline at end of file
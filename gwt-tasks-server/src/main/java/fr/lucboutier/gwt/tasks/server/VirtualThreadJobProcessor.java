@@ -0,0 +1,183 @@
+package fr.lucboutier.gwt.tasks.server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.lucboutier.gwt.tasks.IJobProcessor;
+import fr.lucboutier.gwt.tasks.IJobProgressListener;
+import fr.lucboutier.gwt.tasks.Job;
+import fr.lucboutier.gwt.tasks.JobProcessorMetrics;
+import fr.lucboutier.gwt.tasks.Task;
+
+/**
+ * An {@link IJobProcessor} implementation for the server side that starts a virtual thread for each task. Tasks that
+ * block on I/O don't hold a platform thread so the concurrency is not capped by the number of CPUs, it can be limited
+ * with a semaphore.
+ * 
+ * Virtual threads are not reused so the worker state of the tasks is not kept between tasks.
+ * 
+ * @author luc boutier
+ */
+public class VirtualThreadJobProcessor implements IJobProcessor {
+	private static final Logger LOGGER = Logger.getLogger(VirtualThreadJobProcessor.class.getName());
+
+	private final boolean blockCallingThread;
+	private final Semaphore concurrencyLimit;
+	private final ThreadFactory threadFactory = Thread.ofVirtual().name("gwt-tasks-virtual-", 0).factory();
+	private final AtomicInteger runningTasks = new AtomicInteger();
+	private volatile JobProcessorMetrics metrics = JobProcessorMetrics.NO_OP;
+	private volatile IJobProgressListener progressListener;
+
+	/**
+	 * Create a {@link VirtualThreadJobProcessor} that doesn't block the calling thread and doesn't limit the number of
+	 * tasks processed concurrently.
+	 */
+	public VirtualThreadJobProcessor() {
+		this(false, 0);
+	}
+
+	/**
+	 * Create a new {@link VirtualThreadJobProcessor}.
+	 * 
+	 * @param blockCallingThread <code>true</code> if the calling thread should be blocked on
+	 *            {@link VirtualThreadJobProcessor#processJob(Job)} calls until the job is completed, <code>false</code>
+	 *            if not.
+	 * @param maxConcurrentTasks The maximum number of tasks processed concurrently, 0 or less for no limit.
+	 */
+	public VirtualThreadJobProcessor(boolean blockCallingThread, int maxConcurrentTasks) {
+		this.blockCallingThread = blockCallingThread;
+		this.concurrencyLimit = maxConcurrentTasks > 0 ? new Semaphore(maxConcurrentTasks, true) : null;
+	}
+
+	/**
+	 * Set the metrics that will receive the processor events.
+	 * 
+	 * @param metrics The metrics to use, {@link JobProcessorMetrics#NO_OP} to disable instrumentation.
+	 */
+	public void setMetrics(JobProcessorMetrics metrics) {
+		this.metrics = metrics == null ? JobProcessorMetrics.NO_OP : metrics;
+	}
+
+	/**
+	 * Set a listener to be notified of the progress of the jobs.
+	 * 
+	 * @param progressListener The listener to notify on each task completion, <code>null</code> to remove it.
+	 */
+	public void setProgressListener(IJobProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	@Override
+	public void processJob(final Job job) {
+		final Task<?>[] tasks = job.getTasks();
+		if (tasks.length == 0) {
+			job.getCallback().onCompleted(new Object[0]);
+			return;
+		}
+		final VirtualThreadJob virtualThreadJob = new VirtualThreadJob(job, blockCallingThread);
+		for (int i = 0; i < tasks.length; i++) {
+			threadFactory.newThread(new TaskRunnable(virtualThreadJob, i)).start();
+		}
+
+		if (blockCallingThread) {
+			try {
+				virtualThreadJob.latch.await();
+			} catch (InterruptedException e) {
+				LOGGER.log(Level.SEVERE, "Unable to process job correctly", e);
+			}
+		}
+	}
+
+	private void onTaskCompleted(final VirtualThreadJob virtualThreadJob, boolean success) {
+		if (success) {
+			virtualThreadJob.successCount.incrementAndGet();
+		}
+		int currentCompleted = virtualThreadJob.completedCount.incrementAndGet();
+		int totalCount = virtualThreadJob.results.length;
+		IJobProgressListener listener = progressListener;
+		if (listener != null) {
+			listener.onProgress(virtualThreadJob.job, currentCompleted, virtualThreadJob.successCount.get(),
+					totalCount);
+		}
+		if (LOGGER.isLoggable(Level.FINER)) {
+			LOGGER.finer("Completed " + currentCompleted + " tasks on " + totalCount + " success "
+					+ virtualThreadJob.successCount.get());
+		}
+		if (currentCompleted == totalCount) {
+			virtualThreadJob.job.getCallback().onCompleted(virtualThreadJob.results);
+			if (virtualThreadJob.latch != null) {
+				virtualThreadJob.latch.countDown();
+			}
+		}
+	}
+
+	/** Processing state of a job. */
+	private static class VirtualThreadJob {
+		private final Job job;
+		private final Object[] results;
+		private final AtomicInteger completedCount = new AtomicInteger();
+		private final AtomicInteger successCount = new AtomicInteger();
+		private final CountDownLatch latch;
+
+		public VirtualThreadJob(final Job job, boolean blocking) {
+			this.job = job;
+			this.results = new Object[job.getTasks().length];
+			this.latch = blocking ? new CountDownLatch(1) : null;
+		}
+	}
+
+	/** Runnable that process a single task of a job in it's own virtual thread. */
+	private class TaskRunnable implements Runnable {
+		private final VirtualThreadJob virtualThreadJob;
+		private final int taskIndex;
+
+		public TaskRunnable(final VirtualThreadJob virtualThreadJob, final int taskIndex) {
+			this.virtualThreadJob = virtualThreadJob;
+			this.taskIndex = taskIndex;
+		}
+
+		@Override
+		public void run() {
+			final Task<?> task = virtualThreadJob.job.getTasks()[taskIndex];
+			boolean success = false;
+			try {
+				if (concurrencyLimit != null) {
+					// blocking a virtual thread doesn't hold a platform thread.
+					concurrencyLimit.acquire();
+				}
+			} catch (InterruptedException e) {
+				LOGGER.log(Level.SEVERE, "Interrupted while waiting to process task", e);
+				onTaskCompleted(virtualThreadJob, false);
+				return;
+			}
+			final JobProcessorMetrics currentMetrics = metrics;
+			final boolean metered = currentMetrics != JobProcessorMetrics.NO_OP;
+			final long start = metered ? System.nanoTime() : 0;
+			final int running = runningTasks.incrementAndGet();
+			if (metered) {
+				currentMetrics.onWorkers(running, 0);
+			}
+			try {
+				virtualThreadJob.results[taskIndex] = task.execute();
+				success = true;
+			} catch (Throwable t) {
+				LOGGER.log(Level.SEVERE, "Error while processing task", t);
+			} finally {
+				if (concurrencyLimit != null) {
+					concurrencyLimit.release();
+				}
+			}
+			final int stillRunning = runningTasks.decrementAndGet();
+			if (metered) {
+				currentMetrics.onTaskCompleted(task.getClass().getName(), (System.nanoTime() - start) / 1000000d,
+						success);
+				currentMetrics.onWorkers(stillRunning, 0);
+			}
+			onTaskCompleted(virtualThreadJob, success);
+		}
+	}
+}
\ No newline at end of file
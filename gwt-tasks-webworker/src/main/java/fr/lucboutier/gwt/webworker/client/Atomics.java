@@ -0,0 +1,77 @@
+package fr.lucboutier.gwt.webworker.client;
+
+/**
+ * Atomic operations on shared memory (HTML 5 Atomics object).
+ * 
+ * @author luc boutier
+ */
+public final class Atomics {
+	/** Value returned by {@link #wait(SharedInt32Array, int, int, double)} when the waiter has been notified. */
+	public static final String WAIT_OK = "ok";
+	/** Value returned by {@link #wait(SharedInt32Array, int, int, double)} when the value was not the expected one. */
+	public static final String WAIT_NOT_EQUAL = "not-equal";
+	/** Value returned by {@link #wait(SharedInt32Array, int, int, double)} when the timeout expired. */
+	public static final String WAIT_TIMED_OUT = "timed-out";
+
+	private Atomics() {
+	}
+
+	/**
+	 * Atomically add a value to an element of the array.
+	 * 
+	 * @return The previous value of the element.
+	 */
+	public static native int add(SharedInt32Array array, int index, int value) /*-{
+		return $wnd.Atomics.add(array, index, value);
+	}-*/;
+
+	/**
+	 * Atomically subtract a value from an element of the array.
+	 * 
+	 * @return The previous value of the element.
+	 */
+	public static native int sub(SharedInt32Array array, int index, int value) /*-{
+		return $wnd.Atomics.sub(array, index, value);
+	}-*/;
+
+	public static native int load(SharedInt32Array array, int index) /*-{
+		return $wnd.Atomics.load(array, index);
+	}-*/;
+
+	public static native int store(SharedInt32Array array, int index, int value) /*-{
+		return $wnd.Atomics.store(array, index, value);
+	}-*/;
+
+	/**
+	 * Atomically replace an element of the array if it equals the expected value.
+	 * 
+	 * @return The previous value of the element.
+	 */
+	public static native int compareExchange(SharedInt32Array array, int index, int expectedValue,
+			int replacementValue) /*-{
+		return $wnd.Atomics.compareExchange(array, index, expectedValue, replacementValue);
+	}-*/;
+
+	/**
+	 * Block until the element is notified or the timeout expires. This is only allowed in workers, the main thread can't
+	 * be blocked.
+	 * 
+	 * @param array The array.
+	 * @param index The index of the element.
+	 * @param value The expected value of the element, if the element has another value the method returns immediately.
+	 * @param timeoutMillis The timeout in milliseconds.
+	 * @return {@link #WAIT_OK}, {@link #WAIT_NOT_EQUAL} or {@link #WAIT_TIMED_OUT}.
+	 */
+	public static native String wait(SharedInt32Array array, int index, int value, double timeoutMillis) /*-{
+		return $wnd.Atomics.wait(array, index, value, timeoutMillis);
+	}-*/;
+
+	/**
+	 * Wake up the workers waiting on an element.
+	 * 
+	 * @return The number of workers woken up.
+	 */
+	public static native int notify(SharedInt32Array array, int index, int count) /*-{
+		return $wnd.Atomics.notify(array, index, count);
+	}-*/;
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+package fr.lucboutier.gwt.webworker.client;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * Overlay for an HTML 5 MessageChannel: two entangled {@link MessagePort}s. A port can be transferred to a worker so
+ * that two workers can exchange messages directly without going through the main thread.
+ * 
+ * @author luc boutier
+ */
+public class MessageChannel extends JavaScriptObject {
+
+	public static native MessageChannel create() /*-{
+		return new $wnd.MessageChannel();
+	}-*/;
+
+	protected MessageChannel() {
+		// Constructors must be protected in JavaScriptObject overlays.
+	}
+
+	public final native MessagePort getPort1() /*-{
+		return this.port1;
+	}-*/;
+
+	public final native MessagePort getPort2() /*-{
+		return this.port2;
+	}-*/;
+}
\ No newline at end of file
@@ -26,6 +26,10 @@ public class MessageEvent extends JavaScriptObject {
     // required protected constructor for JavaScriptObject
   }
 
+  public final native JavaScriptObject getData() /*-{
+    return this.data;
+  }-*/;
+
   public final native JavaScriptObject getDataAsJSO() /*-{
     return JSON.parse(this.data);
   }-*/;
@@ -38,6 +42,10 @@ public class MessageEvent extends JavaScriptObject {
     return this.data;
   }-*/;
 
+  public final native boolean isDataString() /*-{
+    return typeof this.data === 'string';
+  }-*/;
+
   public final native String getLastEventId() /*-{
     return this.lastEventId;
   }-*/;
@@ -73,7 +73,7 @@ public class MessagePort extends JavaScriptObject {
 
   public final native void setOnMessage(MessageHandler messageHandler) /*-{
     this.onmessage = function(event) {
-      @fr.lucboutier.gwt.webworker.client.MessagePort::onMessageImpl(Lfr/lucboutier/gwt/webworker/client/MessageHandler;Lfr/lucboutier/gwt/webworker/client/MessageEvent;)(handler,event);
+      @fr.lucboutier.gwt.webworker.client.MessagePort::onMessageImpl(Lfr/lucboutier/gwt/webworker/client/MessageHandler;Lfr/lucboutier/gwt/webworker/client/MessageEvent;)(messageHandler, event);
     }
   }-*/;
 
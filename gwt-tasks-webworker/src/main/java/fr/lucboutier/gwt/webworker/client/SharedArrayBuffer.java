@@ -0,0 +1,41 @@
+package fr.lucboutier.gwt.webworker.client;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * Overlay for an HTML 5 SharedArrayBuffer: a memory region that can be shared (not copied) between the main thread and
+ * the workers. SharedArrayBuffer is only available when the page is cross-origin isolated (served with the
+ * Cross-Origin-Opener-Policy and Cross-Origin-Embedder-Policy headers).
+ * 
+ * @author luc boutier
+ */
+public class SharedArrayBuffer extends JavaScriptObject {
+
+	/**
+	 * Check if shared memory is available in the current context.
+	 * 
+	 * @return <code>true</code> if SharedArrayBuffer can be created and posted to workers.
+	 */
+	public static native boolean isSupported() /*-{
+		return typeof $wnd.SharedArrayBuffer !== 'undefined'
+				&& ($wnd.crossOriginIsolated === undefined || $wnd.crossOriginIsolated);
+	}-*/;
+
+	/**
+	 * Create a new shared buffer.
+	 * 
+	 * @param byteLength The size of the buffer in bytes.
+	 * @return The shared buffer.
+	 */
+	public static native SharedArrayBuffer create(int byteLength) /*-{
+		return new $wnd.SharedArrayBuffer(byteLength);
+	}-*/;
+
+	protected SharedArrayBuffer() {
+		// Constructors must be protected in JavaScriptObject overlays.
+	}
+
+	public final native int getByteLength() /*-{
+		return this.byteLength;
+	}-*/;
+}
\ No newline at end of file
@@ -0,0 +1,53 @@
+package fr.lucboutier.gwt.webworker.client;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * Overlay for a Float64Array view on a {@link SharedArrayBuffer}.
+ * 
+ * @author luc boutier
+ */
+public class SharedFloat64Array extends JavaScriptObject {
+
+	/**
+	 * Create a view on the whole shared buffer.
+	 * 
+	 * @param buffer The shared buffer.
+	 * @return A float64 view on the buffer.
+	 */
+	public static native SharedFloat64Array create(SharedArrayBuffer buffer) /*-{
+		return new $wnd.Float64Array(buffer);
+	}-*/;
+
+	/**
+	 * Create a view on a part of a shared buffer.
+	 * 
+	 * @param buffer The shared buffer.
+	 * @param byteOffset The offset of the view in bytes (must be a multiple of 8).
+	 * @param length The number of float64 elements in the view.
+	 * @return A float64 view on the buffer.
+	 */
+	public static native SharedFloat64Array create(SharedArrayBuffer buffer, int byteOffset, int length) /*-{
+		return new $wnd.Float64Array(buffer, byteOffset, length);
+	}-*/;
+
+	protected SharedFloat64Array() {
+		// Constructors must be protected in JavaScriptObject overlays.
+	}
+
+	public final native double get(int index) /*-{
+		return this[index];
+	}-*/;
+
+	public final native void set(int index, double value) /*-{
+		this[index] = value;
+	}-*/;
+
+	public final native int length() /*-{
+		return this.length;
+	}-*/;
+
+	public final native SharedArrayBuffer getBuffer() /*-{
+		return this.buffer;
+	}-*/;
+}
\ No newline at end of file
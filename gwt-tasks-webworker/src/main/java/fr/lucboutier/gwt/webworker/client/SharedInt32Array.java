@@ -0,0 +1,53 @@
+package fr.lucboutier.gwt.webworker.client;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * Overlay for an Int32Array view on a {@link SharedArrayBuffer}. This is the view type used by {@link Atomics}.
+ * 
+ * @author luc boutier
+ */
+public class SharedInt32Array extends JavaScriptObject {
+
+	/**
+	 * Create a view on the whole shared buffer.
+	 * 
+	 * @param buffer The shared buffer.
+	 * @return An int32 view on the buffer.
+	 */
+	public static native SharedInt32Array create(SharedArrayBuffer buffer) /*-{
+		return new $wnd.Int32Array(buffer);
+	}-*/;
+
+	/**
+	 * Create a view on a part of a shared buffer.
+	 * 
+	 * @param buffer The shared buffer.
+	 * @param byteOffset The offset of the view in bytes (must be a multiple of 4).
+	 * @param length The number of int32 elements in the view.
+	 * @return An int32 view on the buffer.
+	 */
+	public static native SharedInt32Array create(SharedArrayBuffer buffer, int byteOffset, int length) /*-{
+		return new $wnd.Int32Array(buffer, byteOffset, length);
+	}-*/;
+
+	protected SharedInt32Array() {
+		// Constructors must be protected in JavaScriptObject overlays.
+	}
+
+	public final native int get(int index) /*-{
+		return this[index];
+	}-*/;
+
+	public final native void set(int index, int value) /*-{
+		this[index] = value;
+	}-*/;
+
+	public final native int length() /*-{
+		return this.length;
+	}-*/;
+
+	public final native SharedArrayBuffer getBuffer() /*-{
+		return this.buffer;
+	}-*/;
+}
\ No newline at end of file
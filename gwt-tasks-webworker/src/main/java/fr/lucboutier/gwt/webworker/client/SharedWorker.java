@@ -0,0 +1,43 @@
+package fr.lucboutier.gwt.webworker.client;
+
+/**
+ * HTML 5 Web Worker API for Shared Workers: a single worker instance shared by all the pages of the same origin that
+ * create it with the same url and name. Pages communicate with the worker through their own {@link MessagePort}.
+ * 
+ * @author luc boutier
+ */
+public class SharedWorker extends AbstractWorker {
+
+	/**
+	 * Check if shared workers are available in the current browser.
+	 * 
+	 * @return <code>true</code> if shared workers can be created.
+	 */
+	public static native boolean isSupported() /*-{
+		return typeof $wnd.SharedWorker !== 'undefined';
+	}-*/;
+
+	/**
+	 * Create or connect to a shared worker.
+	 * 
+	 * @param url The url of the worker script.
+	 * @param name The name of the shared worker, pages that use the same url and name share the same worker.
+	 * @return The shared worker.
+	 */
+	public static native SharedWorker create(String url, String name) /*-{
+		return new $wnd.SharedWorker(url, name);
+	}-*/;
+
+	protected SharedWorker() {
+		// constructors must be protected in JavaScriptObject overlays.
+	}
+
+	/**
+	 * Get the port used to communicate with the shared worker.
+	 * 
+	 * @return The port of this page connection.
+	 */
+	public final native MessagePort getPort() /*-{
+		return this.port;
+	}-*/;
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package fr.lucboutier.gwt.webworker.client;
+
+import com.google.gwt.core.client.EntryPoint;
+
+/**
+ * Entry point class for implementing a SharedWorker.
+ * 
+ * Runs inside the webworker, so this class cannot assume that Window or Document exists.
+ * 
+ * http://www.whatwg.org/specs/web-workers/current-work/
+ * 
+ * @author luc boutier
+ */
+public abstract class SharedWorkerEntryPoint implements EntryPoint {
+	private SharedWorkerGlobalScope scope;
+
+	public final void close() {
+		getGlobalScope().close();
+	}
+
+	public final WorkerLocation getLocation() {
+		return getGlobalScope().getLocation();
+	}
+
+	public final void importScript(String url) {
+		getGlobalScope().importScript(url);
+	}
+
+	public final void onModuleLoad() {
+		scope = SharedWorkerGlobalScope.get();
+		onWorkerLoad();
+	}
+
+	public abstract void onWorkerLoad();
+
+	protected SharedWorkerGlobalScope getGlobalScope() {
+		return scope;
+	}
+
+	protected final void setOnConnect(MessageHandler connectHandler) {
+		getGlobalScope().setOnConnect(connectHandler);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+package fr.lucboutier.gwt.webworker.client;
+
+/**
+ * The Shared worker has these methods on the top level object.
+ * 
+ * Runs inside the webworker, so this class cannot assume that Window or Document exists.
+ * 
+ * http://www.whatwg.org/specs/web-workers/current-work/
+ * 
+ * @author luc boutier
+ */
+public class SharedWorkerGlobalScope extends WorkerGlobalScope {
+
+	public static native SharedWorkerGlobalScope get() /*-{
+		return $self;
+	}-*/;
+
+	protected SharedWorkerGlobalScope() {
+		// Constructors must be protected in JavaScriptObject overlays.
+	};
+
+	public final native String getName() /*-{
+		return this.name;
+	}-*/;
+
+	/**
+	 * Set the handler called each time a page connects to the shared worker. The port of the connection is the first
+	 * port of the event ({@link MessageEvent#getPorts()}).
+	 * 
+	 * @param connectHandler The handler of the connect events.
+	 */
+	public final native void setOnConnect(MessageHandler connectHandler) /*-{
+		this.onconnect = function(event) {
+			connectHandler.@fr.lucboutier.gwt.webworker.client.MessageHandler::onMessage(Lfr/lucboutier/gwt/webworker/client/MessageEvent;)(event);
+		}
+	}-*/;
+}
\ No newline at end of file
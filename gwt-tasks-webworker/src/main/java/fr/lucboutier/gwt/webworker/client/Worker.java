@@ -16,6 +16,7 @@
 package fr.lucboutier.gwt.webworker.client;
 
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.core.client.JsArray;
 import com.google.gwt.core.client.GWT.UncaughtExceptionHandler;
 
@@ -69,6 +70,16 @@ public class Worker extends AbstractWorker {
     this.postMessage(message, ports);
   }-*/;
 
+  /**
+   * Post a structured-cloneable object to the worker, SharedArrayBuffer
+   * instances are shared and not copied.
+   * 
+   * @param message the object to post.
+   */
+  public final native void postMessage(JavaScriptObject message) /*-{
+    this.postMessage(message);
+  }-*/;
+
   public final native void setOnMessage(MessageHandler messageHandler) /*-{
     this.onmessage = function(event) {
       @fr.lucboutier.gwt.webworker.client.Worker::onMessageImpl(Lfr/lucboutier/gwt/webworker/client/MessageHandler;Lfr/lucboutier/gwt/webworker/client/MessageEvent;)(messageHandler, event);
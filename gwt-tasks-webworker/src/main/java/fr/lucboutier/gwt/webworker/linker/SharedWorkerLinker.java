@@ -0,0 +1,27 @@
+package fr.lucboutier.gwt.webworker.linker;
+
+import com.google.gwt.core.ext.LinkerContext;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.linker.LinkerOrder;
+import com.google.gwt.core.ext.linker.LinkerOrder.Order;
+
+/**
+ * Linker for HTML 5 Shared Web Workers.
+ * 
+ * @author luc boutier
+ */
+@LinkerOrder(Order.PRIMARY)
+public class SharedWorkerLinker extends DedicatedWorkerLinker {
+
+	@Override
+	public String getDescription() {
+		return "Shared Web Worker Linker";
+	}
+
+	@Override
+	protected String getSelectionScriptTemplate(TreeLogger logger, LinkerContext context)
+			throws UnableToCompleteException {
+		return "fr/lucboutier/gwt/webworker/linker/SharedWorkerTemplate.js";
+	}
+}
\ No newline at end of file
@@ -0,0 +1,71 @@
+package fr.lucboutier.gwt.webworker.linker;
+
+import java.util.SortedSet;
+
+import com.google.gwt.core.ext.LinkerContext;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.linker.AbstractLinker;
+import com.google.gwt.core.ext.linker.ArtifactSet;
+import com.google.gwt.core.ext.linker.CompilationResult;
+import com.google.gwt.core.ext.linker.LinkerOrder;
+import com.google.gwt.core.ext.linker.LinkerOrder.Order;
+import com.google.gwt.dev.util.Util;
+
+/**
+ * Linker for HTML 5 Dedicated Web Workers that emits a single self-contained script: the bootstrap is inlined with
+ * the compiled code so a worker starts with a single fetch instead of the selection script followed by
+ * <code>importScripts</code> of the permutation.
+ * 
+ * The module must compile to a single permutation (workers set <code>user.agent</code> to a single value) and should
+ * be compiled with the OBF style so that the script is minified. The linker emits:
+ * <ul>
+ * <li><code>module.nocache.js</code>: the worker script, at the usual location.</li>
+ * <li><code>hash.cache.js</code>: the same script named after it's content, which can be cached forever.</li>
+ * <li><code>module.worker.txt</code>: the name of the hashed script, so that the application can register it's url
+ * (see <code>WebWorkerJobProcessor.registerWorkerUrl</code>).</li>
+ * </ul>
+ * 
+ * @author luc boutier
+ */
+@LinkerOrder(Order.PRIMARY)
+public class SingleScriptWorkerLinker extends AbstractLinker {
+	// same globals as the DedicatedWorkerTemplate.js bootstrap.
+	private static final String BOOTSTRAP = "$stats=function(){};$self=self;$sessionId=null;$wnd=self;$doc=self;"
+			+ "window=self;";
+
+	@Override
+	public String getDescription() {
+		return "Single Script Dedicated Web Worker Linker";
+	}
+
+	@Override
+	public ArtifactSet link(TreeLogger logger, LinkerContext context, ArtifactSet artifacts)
+			throws UnableToCompleteException {
+		SortedSet<CompilationResult> results = artifacts.find(CompilationResult.class);
+		if (results.size() != 1) {
+			logger.log(TreeLogger.ERROR, "The single script worker linker requires a single permutation, found <"
+					+ results.size() + ">. Set a single value for the deferred binding properties of the module.");
+			throw new UnableToCompleteException();
+		}
+		CompilationResult result = results.first();
+		String[] javaScript = result.getJavaScript();
+		if (javaScript.length > 1) {
+			logger.log(TreeLogger.WARN, "Code splitting is not supported by the single script worker linker, <"
+					+ (javaScript.length - 1) + "> fragments ignored.");
+		}
+
+		String moduleName = context.getModuleName();
+		StringBuilder script = new StringBuilder(BOOTSTRAP);
+		script.append(javaScript[0]);
+		script.append("\ngwtOnLoad(undefined,'").append(moduleName).append("','',0);");
+		byte[] scriptBytes = Util.getBytes(script.toString());
+		String hashedName = Util.computeStrongName(scriptBytes) + ".cache.js";
+
+		ArtifactSet toReturn = new ArtifactSet(artifacts);
+		toReturn.add(emitBytes(logger, scriptBytes, moduleName + ".nocache.js"));
+		toReturn.add(emitBytes(logger, scriptBytes, hashedName));
+		toReturn.add(emitString(logger, hashedName, moduleName + ".worker.txt"));
+		return toReturn;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+$stats = function() {
+};
+$self = self;
+$sessionId = null;
+$wnd = self;
+$doc = self;
+window = self;
+
+function __MODULE_FUNC__() {
+	var strongName;
+	var softPermutationId = 0;
+	try {
+		// __PERMUTATIONS_BEGIN__
+		// Permutation logic
+		// __PERMUTATIONS_END__
+	} catch (e) {
+		// a shared worker has no global postMessage, report the error to the connecting pages.
+		var errorMsg = "TERR::shared worker bootstrap error " + e.message;
+		self.onconnect = function(event) {
+			event.ports[0].postMessage(errorMsg);
+		};
+		return;
+	}
+	var idx = strongName.indexOf(':');
+	if (idx != -1) {
+		softPermutationId = Number(strongName.substring(idx + 1));
+		strongName = strongName.substring(0, idx);
+	}
+	importScripts(strongName + ".cache.js");
+	gwtOnLoad(undefined, '__MODULE_NAME__', '', softPermutationId);
+}
+
+__MODULE_FUNC__();
\ No newline at end of file
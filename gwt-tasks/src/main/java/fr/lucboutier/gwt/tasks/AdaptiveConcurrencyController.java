@@ -0,0 +1,181 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resizes the pool of a {@link ThreadJobProcessor} at run time using hill-climbing on the observed throughput: the
+ * limit moves in the same direction while the throughput improves and reverses when it degrades. When the tasks spend
+ * most of their time blocked (I/O) the limit moves by larger steps, and when the queue is empty the limit slowly decays
+ * to release the idle threads.
+ * 
+ * The limit is applied to both the core and the maximum pool sizes: threads above the limit exit once their current
+ * task is done, even when the queue is not empty, and the overflow policy applies once the limit is reached.
+ * 
+ * @author luc boutier
+ */
+public class AdaptiveConcurrencyController {
+	private static final Logger LOGGER = Logger.getLogger(AdaptiveConcurrencyController.class.getName());
+
+	// relative throughput change considered as noise.
+	private static final double TOLERANCE = 0.05;
+	// ratio of blocked time above which the tasks are considered I/O bound.
+	private static final double BLOCKED_RATIO_THRESHOLD = 0.5;
+	// queue latency (in ms) below which the pool is considered under-loaded.
+	private static final double IDLE_QUEUE_LATENCY_MILLIS = 1;
+
+	private final ThreadPoolExecutor executor;
+	private final BlockingQueue<Runnable> workQueue;
+	private final int minLimit;
+	private final int maxLimit;
+	private final long sampleMillis;
+	private final ScheduledExecutorService scheduler;
+
+	private final AtomicLong completedTasks = new AtomicLong();
+	private final AtomicLong queueNanos = new AtomicLong();
+	private final AtomicLong wallNanos = new AtomicLong();
+	private final AtomicLong cpuNanos = new AtomicLong();
+
+	private volatile int currentLimit;
+	private volatile double lastThroughput = -1;
+	private int direction = 1;
+	private long lastSampleNanos;
+
+	AdaptiveConcurrencyController(ThreadPoolExecutor executor, BlockingQueue<Runnable> workQueue, int minLimit,
+			int maxLimit, long sampleMillis) {
+		this.executor = executor;
+		this.workQueue = workQueue;
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.sampleMillis = sampleMillis;
+		this.currentLimit = Math.min(this.maxLimit, Math.max(this.minLimit, executor.getCorePoolSize()));
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "gwt-tasks-adaptive-concurrency");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Get the current concurrency limit (the core and maximum pool sizes of the processor).
+	 * 
+	 * @return The current limit.
+	 */
+	public int getCurrentLimit() {
+		return currentLimit;
+	}
+
+	/**
+	 * Get the throughput measured during the last sample period.
+	 * 
+	 * @return The number of tasks completed per second, -1 if not measured yet.
+	 */
+	public double getLastThroughput() {
+		return lastThroughput;
+	}
+
+	void start() {
+		lastSampleNanos = System.nanoTime();
+		applyLimit(currentLimit);
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sample();
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.SEVERE, "Unable to adapt the concurrency", e);
+				}
+			}
+		}, sampleMillis, sampleMillis, TimeUnit.MILLISECONDS);
+	}
+
+	void stop() {
+		scheduler.shutdown();
+	}
+
+	/**
+	 * Record the timings of a completed task.
+	 * 
+	 * @param taskQueueNanos The time the task waited in the queue.
+	 * @param taskWallNanos The time spent to execute the task.
+	 * @param taskCpuNanos The cpu time used to execute the task, -1 if not measured.
+	 */
+	void onTaskCompleted(long taskQueueNanos, long taskWallNanos, long taskCpuNanos) {
+		completedTasks.incrementAndGet();
+		queueNanos.addAndGet(taskQueueNanos);
+		wallNanos.addAndGet(taskWallNanos);
+		cpuNanos.addAndGet(taskCpuNanos < 0 ? taskWallNanos : taskCpuNanos);
+	}
+
+	private synchronized void sample() {
+		long now = System.nanoTime();
+		double seconds = (now - lastSampleNanos) / 1000000000d;
+		lastSampleNanos = now;
+		long completed = completedTasks.getAndSet(0);
+		long queued = queueNanos.getAndSet(0);
+		long wall = wallNanos.getAndSet(0);
+		long cpu = cpuNanos.getAndSet(0);
+		if (completed == 0) {
+			// nothing to learn from an idle period, nor from a period shorter than the tasks.
+			return;
+		}
+
+		double throughput = completed / seconds;
+		double queueLatencyMillis = queued / 1000000d / completed;
+		double blockedRatio = wall == 0 ? 0 : Math.max(0, 1 - (double) cpu / wall);
+		int step = blockedRatio > BLOCKED_RATIO_THRESHOLD ? 2 : 1;
+		int limit = currentLimit;
+
+		if (workQueue.isEmpty() && queueLatencyMillis < IDLE_QUEUE_LATENCY_MILLIS) {
+			// the pool is not saturated, release a thread.
+			if (executor.getActiveCount() < limit - 1) {
+				limit--;
+			}
+			direction = 1;
+		} else if (lastThroughput < 0 || throughput > lastThroughput * (1 + TOLERANCE)) {
+			limit += direction * step;
+		} else if (throughput < lastThroughput * (1 - TOLERANCE)) {
+			direction = -direction;
+			limit += direction * step;
+		} else if (blockedRatio > BLOCKED_RATIO_THRESHOLD) {
+			// plateau while the tasks are blocked, more threads may hide the latency.
+			direction = 1;
+			limit += step;
+		}
+		lastThroughput = throughput;
+		setLimit(limit);
+		if (LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.fine("Throughput <" + throughput + "> tasks/s, queue latency <" + queueLatencyMillis
+					+ "> ms, blocked ratio <" + blockedRatio + ">, limit <" + currentLimit + ">");
+		}
+	}
+
+	private void setLimit(int limit) {
+		int newLimit = Math.min(maxLimit, Math.max(minLimit, limit));
+		if (newLimit != currentLimit) {
+			currentLimit = newLimit;
+			applyLimit(newLimit);
+		}
+	}
+
+	private void applyLimit(int limit) {
+		// the core pool size can't be greater than the maximum pool size.
+		if (limit < executor.getCorePoolSize()) {
+			executor.setCorePoolSize(limit);
+			executor.setMaximumPoolSize(limit);
+		} else {
+			executor.setMaximumPoolSize(limit);
+			executor.setCorePoolSize(limit);
+		}
+	}
+}
\ No newline at end of file
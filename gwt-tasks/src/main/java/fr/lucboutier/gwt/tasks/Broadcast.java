@@ -0,0 +1,120 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gwt.core.shared.GWT;
+import com.kfuntak.gwt.json.serialization.client.Serializer;
+
+/**
+ * A read-only value shared by all the tasks processed by a job processor. Instead of being serialized in every task,
+ * the value is sent once to each worker and kept in the worker's global scope. Tasks reference the value by it's id
+ * ({@link #getId()}) and get it back with {@link #get(int)}.
+ * 
+ * Broadcast values are created with the broadcast method of the job processors and must be released once not used
+ * anymore.
+ * 
+ * @author luc boutier
+ */
+public final class Broadcast<V> {
+	/** Flag of the messages that send a broadcast value to a worker (TBC::id|value). */
+	public static final String BROADCAST_FLAG = "TBC::";
+	/** Flag of the messages that release a broadcast value in a worker (TBR::id). */
+	public static final String RELEASE_FLAG = "TBR::";
+
+	private static final Map<Integer, Object> VALUES = new HashMap<Integer, Object>();
+	// values received by a worker, deserialized on first use.
+	private static final Map<Integer, String> SERIALIZED_VALUES = new HashMap<Integer, String>();
+	private static int nextId = 0;
+	private static Serializer serializer;
+
+	private final int id;
+	private final V value;
+
+	private Broadcast(int id, V value) {
+		this.id = id;
+		this.value = value;
+	}
+
+	/**
+	 * Register a new broadcast value in the current worker (the main thread or the JVM).
+	 * 
+	 * @param value The value to share.
+	 * @return The broadcast value handle.
+	 */
+	static synchronized <V> Broadcast<V> create(V value) {
+		Broadcast<V> broadcast = new Broadcast<V>(nextId++, value);
+		VALUES.put(broadcast.id, value);
+		return broadcast;
+	}
+
+	/**
+	 * Remove a broadcast value from the current worker.
+	 * 
+	 * @param id The id of the broadcast value.
+	 */
+	static synchronized void release(int id) {
+		VALUES.remove(id);
+		SERIALIZED_VALUES.remove(id);
+	}
+
+	/**
+	 * Process a broadcast message received by a web worker.
+	 * 
+	 * @param message The message sent by the processor.
+	 * @return <code>true</code> if the message is a broadcast message, <code>false</code> if not.
+	 */
+	static boolean onMessage(String message) {
+		if (message.startsWith(BROADCAST_FLAG)) {
+			int separatorIndex = message.indexOf(Task.TASK_ID_SEPARATOR, BROADCAST_FLAG.length());
+			int id = Integer.parseInt(message.substring(BROADCAST_FLAG.length(), separatorIndex));
+			SERIALIZED_VALUES.put(id, message.substring(separatorIndex + 1));
+			return true;
+		}
+		if (message.startsWith(RELEASE_FLAG)) {
+			release(Integer.parseInt(message.substring(RELEASE_FLAG.length())));
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Get a broadcast value from a task.
+	 * 
+	 * @param id The id of the broadcast value.
+	 * @return The value or <code>null</code> if no value is registered with the given id in the current worker.
+	 */
+	@SuppressWarnings("unchecked")
+	public static synchronized <V> V get(int id) {
+		Object value = VALUES.get(id);
+		if (value == null) {
+			String serializedValue = SERIALIZED_VALUES.remove(id);
+			if (serializedValue != null) {
+				if (serializer == null) {
+					serializer = GWT.create(Serializer.class);
+				}
+				value = serializer.deSerialize(serializedValue);
+				VALUES.put(id, value);
+			}
+		}
+		return (V) value;
+	}
+
+	/**
+	 * Get the id of the broadcast value, to be set in the tasks that use it.
+	 * 
+	 * @return The id of the broadcast value.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Get the value.
+	 * 
+	 * @return The broadcast value.
+	 */
+	public V getValue() {
+		return value;
+	}
+}
\ No newline at end of file
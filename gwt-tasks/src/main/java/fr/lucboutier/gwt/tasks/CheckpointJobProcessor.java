@@ -0,0 +1,139 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gwt.core.shared.GWT;
+import com.kfuntak.gwt.json.serialization.client.JsonSerializable;
+import com.kfuntak.gwt.json.serialization.client.Serializer;
+
+/**
+ * A job processor that persists the results of the {@link CheckpointedJob}s as their tasks complete, so that a job
+ * interrupted by a page reload or a JVM restart can be submitted again and only process the tasks that were not
+ * completed. The tasks are processed as a {@link StreamingJob} by the given processor and each result is saved as soon
+ * as it is received. Once all the tasks have succeeded the checkpoint is deleted, failed tasks are processed again on
+ * the next submission. Other jobs are processed by the delegate processor directly.
+ * 
+ * Only <code>null</code> and {@link JsonSerializable} results (such as the results of the tasks processed by web
+ * workers) are persisted, tasks with other results are processed again on each submission.
+ * 
+ * @author luc boutier
+ */
+public class CheckpointJobProcessor implements IJobProcessor {
+	private static final Logger LOGGER = Logger.getLogger(CheckpointJobProcessor.class.getName());
+
+	private final Serializer serializer = GWT.create(Serializer.class);
+	private final IStreamingJobProcessor delegate;
+	private final ICheckpointStore store;
+
+	/**
+	 * Create a new {@link CheckpointJobProcessor}.
+	 * 
+	 * @param delegate The processor that process the tasks.
+	 * @param store The store of the completed results, see IndexedDbCheckpointStore in the browser and
+	 *            FileCheckpointStore (gwt-tasks-server) on the JVM.
+	 */
+	public CheckpointJobProcessor(IStreamingJobProcessor delegate, ICheckpointStore store) {
+		this.delegate = delegate;
+		this.store = store;
+	}
+
+	@Override
+	public void processJob(final Job job) {
+		if (!(job instanceof CheckpointedJob)) {
+			delegate.processJob(job);
+			return;
+		}
+		final CheckpointedJob checkpointedJob = (CheckpointedJob) job;
+		store.load(checkpointedJob.getId(), new ICheckpointLoadCallback() {
+			@Override
+			public void onLoaded(Map<Integer, String> savedResults) {
+				resume(checkpointedJob, savedResults);
+			}
+		});
+	}
+
+	/** Process the tasks of a job which results have not been persisted. */
+	private void resume(final CheckpointedJob job, Map<Integer, String> savedResults) {
+		final Task<?>[] tasks = job.getTasks();
+		final Object[] results = new Object[tasks.length];
+		// indexes in the job of the tasks to process.
+		final List<Integer> remaining = new ArrayList<Integer>();
+		for (int i = 0; i < tasks.length; i++) {
+			String savedResult = savedResults.get(i);
+			if (savedResult == null) {
+				remaining.add(i);
+			} else if (!savedResult.isEmpty()) {
+				try {
+					results[i] = serializer.deSerialize(savedResult);
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Unable to read the saved result of task " + i
+							+ ", it is processed again", e);
+					remaining.add(i);
+				}
+			}
+		}
+		if (LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.fine("Resuming job <" + job.getId() + ">, " + (tasks.length - remaining.size()) + " tasks on "
+					+ tasks.length + " already completed");
+		}
+		if (remaining.isEmpty()) {
+			store.delete(job.getId());
+			job.getCallback().onCompleted(results);
+			return;
+		}
+
+		Iterator<Task<?>> source = new Iterator<Task<?>>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < remaining.size();
+			}
+
+			@Override
+			public Task<?> next() {
+				return tasks[remaining.get(next++)];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		delegate.processStreamingJob(new StreamingJob(source, new IStreamingJobCallback() {
+			@Override
+			public void onTaskCompleted(int taskIndex, Object result, boolean success) {
+				int index = remaining.get(taskIndex);
+				results[index] = result;
+				if (success) {
+					checkpoint(job.getId(), index, result);
+				}
+			}
+
+			@Override
+			public void onCompleted(int completedTasks, int successTasks) {
+				if (successTasks == remaining.size()) {
+					store.delete(job.getId());
+				} else {
+					store.close(job.getId());
+				}
+				job.getCallback().onCompleted(results);
+			}
+		}, job.getTenant()));
+	}
+
+	private void checkpoint(String jobId, int taskIndex, Object result) {
+		if (result == null) {
+			store.save(jobId, taskIndex, "");
+		} else if (result instanceof JsonSerializable) {
+			store.save(jobId, taskIndex, serializer.serialize(result));
+		} else if (LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.fine("Result of task " + taskIndex + " of job <" + jobId + "> is not JsonSerializable, not saved");
+		}
+	}
+}
\ No newline at end of file
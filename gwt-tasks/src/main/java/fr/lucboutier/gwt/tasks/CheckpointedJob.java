@@ -0,0 +1,41 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * A job which completed results are persisted by a {@link CheckpointJobProcessor}. When a job with the same id is
+ * submitted again, after a page reload or a JVM restart, only the tasks which result has not been persisted are
+ * processed. The id must identify the tasks of the job: a job with the same id must have the same tasks in the same
+ * order.
+ * 
+ * @author luc boutier
+ */
+public class CheckpointedJob extends Job {
+	private final String id;
+
+	/**
+	 * Create a new checkpointed job.
+	 * 
+	 * @param id The id of the job.
+	 * @param tasks The tasks part of the job.
+	 * @param callback The callback to trigger once the job is completed.
+	 */
+	public CheckpointedJob(String id, Task<?>[] tasks, IJobCompletedCallback callback) {
+		this(id, tasks, callback, null);
+	}
+
+	/**
+	 * Create a new checkpointed job for a tenant.
+	 * 
+	 * @param id The id of the job.
+	 * @param tasks The tasks part of the job.
+	 * @param callback The callback to trigger once the job is completed.
+	 * @param tenant The tenant that submits the job (see {@link Job#getTenant()}).
+	 */
+	public CheckpointedJob(String id, Task<?>[] tasks, IJobCompletedCallback callback, String tenant) {
+		super(tasks, callback, tenant);
+		this.id = id;
+	}
+
+	public String getId() {
+		return id;
+	}
+}
\ No newline at end of file
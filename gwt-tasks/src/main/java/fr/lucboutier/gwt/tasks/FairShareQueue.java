@@ -0,0 +1,511 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Task queue of a {@link ThreadJobProcessor} that shares the threads between the tenants of the jobs (see
+ * {@link Job#getTenant()}) instead of processing the tasks in submission order.
+ * 
+ * Each tenant has it's own FIFO queue and the threads take tasks from the tenants using weighted fair queuing: every
+ * tenant has a virtual time that advances by 1/weight on each task taken and the tenant with the lowest virtual time
+ * is served first, so a tenant that submits a huge job only delays the others by it's share of the threads. A tenant
+ * that becomes active starts at the current virtual time and gets no credit for the time it was idle.
+ * 
+ * Quotas bound each tenant: a tenant that already runs it's maximum number of concurrent tasks is skipped until one of
+ * them completes, and a tenant that has it's maximum number of queued tasks is considered as full, in which case the
+ * processor's overflow policy applies to this tenant only. With {@link OverflowPolicy#DROP_OLDEST} a tenant only drops
+ * it's own tasks: when the queue is full and the tenant has no queued task, it's new task is rejected.
+ * 
+ * @author luc boutier
+ */
+public class FairShareQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+	/** Tenant of the jobs that don't define one. */
+	public static final String DEFAULT_TENANT = "default";
+
+	private final int capacity;
+	private final ReentrantLock lock = new ReentrantLock();
+	// signaled when a task may be taken (task queued or tenant below it's concurrency cap).
+	private final Condition available = lock.newCondition();
+	// signaled when a task leaves the queue.
+	private final Condition notFull = lock.newCondition();
+	private final Map<String, Quota> quotas = new HashMap<String, Quota>();
+	private final Map<String, TenantQueue> tenants = new HashMap<String, TenantQueue>();
+	// tasks taken by a thread and not completed yet.
+	private final Map<Runnable, TenantQueue> runningTasks = new IdentityHashMap<Runnable, TenantQueue>();
+	private Quota defaultQuota = new Quota(1, Integer.MAX_VALUE, Integer.MAX_VALUE);
+	private double virtualTime = 0;
+	private int count = 0;
+
+	/**
+	 * Create a fair share queue without global capacity limit.
+	 */
+	public FairShareQueue() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Create a fair share queue.
+	 * 
+	 * @param capacity The maximum number of tasks queued for all the tenants.
+	 */
+	public FairShareQueue(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Set the quota of the tenants that don't have a specific quota.
+	 * 
+	 * @param weight The share of the threads of each tenant relative to the other tenants.
+	 * @param maxConcurrentTasks The maximum number of tasks of a tenant that are processed concurrently.
+	 * @param maxQueuedTasks The maximum number of tasks of a tenant that wait for a thread.
+	 */
+	public void setDefaultQuota(int weight, int maxConcurrentTasks, int maxQueuedTasks) {
+		lock.lock();
+		try {
+			defaultQuota = new Quota(weight, maxConcurrentTasks, maxQueuedTasks);
+			for (TenantQueue tenantQueue : tenants.values()) {
+				if (!quotas.containsKey(tenantQueue.tenant)) {
+					tenantQueue.quota = defaultQuota;
+				}
+			}
+			available.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Set the quota of a tenant.
+	 * 
+	 * @param tenant The tenant.
+	 * @param weight The share of the threads of the tenant relative to the other tenants.
+	 * @param maxConcurrentTasks The maximum number of tasks of the tenant that are processed concurrently.
+	 * @param maxQueuedTasks The maximum number of tasks of the tenant that wait for a thread.
+	 */
+	public void setTenantQuota(String tenant, int weight, int maxConcurrentTasks, int maxQueuedTasks) {
+		String key = tenant == null ? DEFAULT_TENANT : tenant;
+		lock.lock();
+		try {
+			Quota quota = new Quota(weight, maxConcurrentTasks, maxQueuedTasks);
+			quotas.put(key, quota);
+			TenantQueue tenantQueue = tenants.get(key);
+			if (tenantQueue != null) {
+				tenantQueue.quota = quota;
+			}
+			available.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Get the number of tasks of a tenant that wait for a thread.
+	 * 
+	 * @param tenant The tenant.
+	 * @return The number of queued tasks of the tenant.
+	 */
+	public int getQueuedTasks(String tenant) {
+		lock.lock();
+		try {
+			TenantQueue tenantQueue = tenants.get(tenant == null ? DEFAULT_TENANT : tenant);
+			return tenantQueue == null ? 0 : tenantQueue.tasks.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Get the number of tasks of a tenant that are processed.
+	 * 
+	 * @param tenant The tenant.
+	 * @return The number of running tasks of the tenant.
+	 */
+	public int getRunningTasks(String tenant) {
+		lock.lock();
+		try {
+			TenantQueue tenantQueue = tenants.get(tenant == null ? DEFAULT_TENANT : tenant);
+			return tenantQueue == null ? 0 : tenantQueue.running;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public boolean offer(Runnable runnable) {
+		if (runnable == null) {
+			throw new NullPointerException();
+		}
+		lock.lock();
+		try {
+			return enqueue(runnable);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(Runnable runnable) throws InterruptedException {
+		if (runnable == null) {
+			throw new NullPointerException();
+		}
+		lock.lockInterruptibly();
+		try {
+			while (!enqueue(runnable)) {
+				notFull.await();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(Runnable runnable, long timeout, TimeUnit unit) throws InterruptedException {
+		if (runnable == null) {
+			throw new NullPointerException();
+		}
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (!enqueue(runnable)) {
+				if (nanos <= 0) {
+					return false;
+				}
+				nanos = notFull.awaitNanos(nanos);
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable poll() {
+		lock.lock();
+		try {
+			TenantQueue next = next();
+			return next == null ? null : take(next);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			TenantQueue next;
+			while ((next = next()) == null) {
+				available.await();
+			}
+			return take(next);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			TenantQueue next;
+			while ((next = next()) == null) {
+				if (nanos <= 0) {
+					return null;
+				}
+				nanos = available.awaitNanos(nanos);
+			}
+			return take(next);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable peek() {
+		lock.lock();
+		try {
+			TenantQueue next = next();
+			return next == null ? null : next.tasks.peek();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove the oldest queued task of the tenant of the given task, used to drop a task when the tenant queue is
+	 * full. The removed task is not considered as running.
+	 * 
+	 * @param runnable The task that can't be queued.
+	 * @return The oldest task of the same tenant, <code>null</code> if the tenant has no queued task: the tasks of the
+	 *         other tenants are never dropped.
+	 */
+	public Runnable pollOldest(Runnable runnable) {
+		lock.lock();
+		try {
+			TenantQueue tenantQueue = tenants.get(tenantOf(runnable));
+			if (tenantQueue == null || tenantQueue.tasks.isEmpty()) {
+				return null;
+			}
+			Runnable oldest = tenantQueue.tasks.poll();
+			count--;
+			release(tenantQueue);
+			notFull.signalAll();
+			return oldest;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Notify the queue that a task taken from it has been processed so the tenant can run another task. Tasks that
+	 * didn't come from the queue are ignored.
+	 * 
+	 * @param runnable The processed task.
+	 */
+	public void onTaskCompleted(Runnable runnable) {
+		lock.lock();
+		try {
+			TenantQueue tenantQueue = runningTasks.remove(runnable);
+			if (tenantQueue != null) {
+				tenantQueue.running--;
+				release(tenantQueue);
+				available.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		lock.lock();
+		try {
+			for (TenantQueue tenantQueue : tenants.values()) {
+				if (tenantQueue.tasks.remove(o)) {
+					count--;
+					release(tenantQueue);
+					notFull.signalAll();
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			return capacity - count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> c, int maxElements) {
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+		lock.lock();
+		try {
+			int drained = 0;
+			Iterator<TenantQueue> iterator = tenants.values().iterator();
+			while (drained < maxElements && iterator.hasNext()) {
+				TenantQueue tenantQueue = iterator.next();
+				while (drained < maxElements && !tenantQueue.tasks.isEmpty()) {
+					c.add(tenantQueue.tasks.poll());
+					drained++;
+					count--;
+				}
+				if (tenantQueue.isIdle()) {
+					iterator.remove();
+				}
+			}
+			if (drained > 0) {
+				notFull.signalAll();
+			}
+			return drained;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Get a snapshot of the queued tasks, in no particular order.
+	 */
+	@Override
+	public Iterator<Runnable> iterator() {
+		lock.lock();
+		try {
+			List<Runnable> snapshot = new ArrayList<Runnable>(count);
+			for (TenantQueue tenantQueue : tenants.values()) {
+				snapshot.addAll(tenantQueue.tasks);
+			}
+			final Iterator<Runnable> iterator = snapshot.iterator();
+			return new Iterator<Runnable>() {
+				private Runnable current;
+
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public Runnable next() {
+					current = iterator.next();
+					return current;
+				}
+
+				@Override
+				public void remove() {
+					FairShareQueue.this.remove(current);
+				}
+			};
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** Queue a task if both the queue and the tenant have room, must be called with the lock held. */
+	private boolean enqueue(Runnable runnable) {
+		if (count >= capacity) {
+			return false;
+		}
+		String tenant = tenantOf(runnable);
+		TenantQueue tenantQueue = tenants.get(tenant);
+		if (tenantQueue == null) {
+			Quota quota = quotas.get(tenant);
+			tenantQueue = new TenantQueue(tenant, quota == null ? defaultQuota : quota);
+			tenants.put(tenant, tenantQueue);
+		}
+		if (tenantQueue.tasks.size() >= tenantQueue.quota.maxQueuedTasks) {
+			return false;
+		}
+		if (tenantQueue.tasks.isEmpty()) {
+			// a tenant that becomes backlogged doesn't get credit for the time it was idle.
+			tenantQueue.pass = Math.max(tenantQueue.pass, virtualTime);
+		}
+		tenantQueue.tasks.add(runnable);
+		count++;
+		available.signal();
+		return true;
+	}
+
+	/** Get the tenant to serve next, must be called with the lock held. */
+	private TenantQueue next() {
+		TenantQueue next = null;
+		for (TenantQueue tenantQueue : tenants.values()) {
+			if (!tenantQueue.tasks.isEmpty() && tenantQueue.running < tenantQueue.quota.maxConcurrentTasks
+					&& (next == null || tenantQueue.pass < next.pass)) {
+				next = tenantQueue;
+			}
+		}
+		return next;
+	}
+
+	/** Take the next task of a tenant for processing, must be called with the lock held. */
+	private Runnable take(TenantQueue tenantQueue) {
+		Runnable runnable = tenantQueue.tasks.poll();
+		count--;
+		tenantQueue.running++;
+		virtualTime = tenantQueue.pass;
+		tenantQueue.pass += 1d / tenantQueue.quota.weight;
+		runningTasks.put(runnable, tenantQueue);
+		notFull.signalAll();
+		return runnable;
+	}
+
+	/** Forget the state of an idle tenant, must be called with the lock held. */
+	private void release(TenantQueue tenantQueue) {
+		if (tenantQueue.isIdle()) {
+			tenants.remove(tenantQueue.tenant);
+		}
+	}
+
+	private static String tenantOf(Runnable runnable) {
+		if (runnable instanceof ITenantRunnable) {
+			String tenant = ((ITenantRunnable) runnable).getTenant();
+			if (tenant != null) {
+				return tenant;
+			}
+		}
+		return DEFAULT_TENANT;
+	}
+
+	/** Runnable that belongs to a tenant, other runnables belong to the {@link #DEFAULT_TENANT}. */
+	interface ITenantRunnable extends Runnable {
+		String getTenant();
+	}
+
+	private static class Quota {
+		private final int weight;
+		private final int maxConcurrentTasks;
+		private final int maxQueuedTasks;
+
+		public Quota(int weight, int maxConcurrentTasks, int maxQueuedTasks) {
+			if (weight <= 0 || maxConcurrentTasks <= 0 || maxQueuedTasks <= 0) {
+				throw new IllegalArgumentException("Quota values must be positive.");
+			}
+			this.weight = weight;
+			this.maxConcurrentTasks = maxConcurrentTasks;
+			this.maxQueuedTasks = maxQueuedTasks;
+		}
+	}
+
+	private static class TenantQueue {
+		private final String tenant;
+		private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+		private Quota quota;
+		private int running = 0;
+		private double pass = 0;
+
+		public TenantQueue(String tenant, Quota quota) {
+			this.tenant = tenant;
+			this.quota = quota;
+		}
+
+		public boolean isIdle() {
+			return tasks.isEmpty() && running == 0;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,126 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link JobProcessorMetrics} implementation that aggregates the events in memory: latency histograms per task type,
+ * serialization histograms, message bytes and worker counters. Dashboards can poll the getters.
+ * 
+ * @author luc boutier
+ */
+public class HistogramJobProcessorMetrics extends JobProcessorMetrics {
+	private final Map<String, LatencyHistogram> taskLatencies = new HashMap<String, LatencyHistogram>();
+	private final LatencyHistogram serializationTimes = new LatencyHistogram();
+	private final LatencyHistogram deserializationTimes = new LatencyHistogram();
+	private int queueDepth;
+	private int activeWorkers;
+	private int idleWorkers;
+	private long failedTasks;
+	private long sentBytes;
+	private long receivedBytes;
+	private long spawnedWorkers;
+	private long terminatedWorkers;
+
+	@Override
+	public synchronized void onQueueDepth(int depth) {
+		this.queueDepth = depth;
+	}
+
+	@Override
+	public synchronized void onWorkers(int active, int idle) {
+		this.activeWorkers = active;
+		this.idleWorkers = idle;
+	}
+
+	@Override
+	public void onTaskCompleted(String taskType, double latencyMillis, boolean success) {
+		LatencyHistogram histogram;
+		synchronized (this) {
+			histogram = taskLatencies.get(taskType);
+			if (histogram == null) {
+				histogram = new LatencyHistogram();
+				taskLatencies.put(taskType, histogram);
+			}
+			if (!success) {
+				failedTasks++;
+			}
+		}
+		histogram.record(latencyMillis);
+	}
+
+	@Override
+	public void onMessageSent(String taskType, double durationMillis, int messageLength) {
+		serializationTimes.record(durationMillis);
+		synchronized (this) {
+			sentBytes += messageLength;
+		}
+	}
+
+	@Override
+	public void onMessageReceived(String taskType, double durationMillis, int messageLength) {
+		deserializationTimes.record(durationMillis);
+		synchronized (this) {
+			receivedBytes += messageLength;
+		}
+	}
+
+	@Override
+	public synchronized void onWorkerSpawned(String workerName) {
+		spawnedWorkers++;
+	}
+
+	@Override
+	public synchronized void onWorkerTerminated(String workerName) {
+		terminatedWorkers++;
+	}
+
+	/**
+	 * Get the latency histograms.
+	 * 
+	 * @return A copy of the map of latency histograms by task type.
+	 */
+	public synchronized Map<String, LatencyHistogram> getTaskLatencies() {
+		return new HashMap<String, LatencyHistogram>(taskLatencies);
+	}
+
+	public LatencyHistogram getSerializationTimes() {
+		return serializationTimes;
+	}
+
+	public LatencyHistogram getDeserializationTimes() {
+		return deserializationTimes;
+	}
+
+	public synchronized int getQueueDepth() {
+		return queueDepth;
+	}
+
+	public synchronized int getActiveWorkers() {
+		return activeWorkers;
+	}
+
+	public synchronized int getIdleWorkers() {
+		return idleWorkers;
+	}
+
+	public synchronized long getFailedTasks() {
+		return failedTasks;
+	}
+
+	public synchronized long getSentBytes() {
+		return sentBytes;
+	}
+
+	public synchronized long getReceivedBytes() {
+		return receivedBytes;
+	}
+
+	public synchronized long getSpawnedWorkers() {
+		return spawnedWorkers;
+	}
+
+	public synchronized long getTerminatedWorkers() {
+		return terminatedWorkers;
+	}
+}
\ No newline at end of file
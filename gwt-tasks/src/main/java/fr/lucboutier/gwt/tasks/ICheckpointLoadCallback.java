@@ -0,0 +1,17 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.Map;
+
+/**
+ * Callback triggered once the results persisted for a job have been loaded from an {@link ICheckpointStore}.
+ * 
+ * @author luc boutier
+ */
+public interface ICheckpointLoadCallback {
+	/**
+	 * Method triggered once the results are loaded.
+	 * 
+	 * @param results The serialized results of the completed tasks by task index, empty if the job has no checkpoint.
+	 */
+	void onLoaded(Map<Integer, String> results);
+}
\ No newline at end of file
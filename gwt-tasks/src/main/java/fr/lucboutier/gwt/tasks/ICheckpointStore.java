@@ -0,0 +1,42 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * Storage of the results of the {@link CheckpointedJob}s used by the {@link CheckpointJobProcessor}. Stores may be
+ * asynchronous, and for the {@link ThreadJobProcessor} {@link #save(String, int, String)} may be called concurrently
+ * from several threads.
+ * 
+ * @author luc boutier
+ */
+public interface ICheckpointStore {
+	/**
+	 * Load the results persisted for a job.
+	 * 
+	 * @param jobId The id of the job.
+	 * @param callback The callback to trigger with the results.
+	 */
+	void load(String jobId, ICheckpointLoadCallback callback);
+
+	/**
+	 * Persist the result of a completed task.
+	 * 
+	 * @param jobId The id of the job.
+	 * @param taskIndex The index of the task in the job.
+	 * @param result The serialized result of the task.
+	 */
+	void save(String jobId, int taskIndex, String result);
+
+	/**
+	 * Release the resources used to save the results of a job, called once the job has completed with failed tasks.
+	 * The persisted results are kept so that the job can be resumed.
+	 * 
+	 * @param jobId The id of the job.
+	 */
+	void close(String jobId);
+
+	/**
+	 * Remove the results persisted for a job, called once all the tasks of the job have succeeded.
+	 * 
+	 * @param jobId The id of the job.
+	 */
+	void delete(String jobId);
+}
\ No newline at end of file
@@ -0,0 +1,19 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * Interface for the tasks that can be executed several times with the same result and without side effects. Job
+ * processors with speculative execution enabled may launch copies of such tasks when they are late and keep the first
+ * result.
+ * 
+ * @author luc boutier
+ */
+public interface IIdempotentTask {
+	/**
+	 * Create a copy of the task with the same parameters. The JVM job processors execute the copy in another thread
+	 * while the task is still running, so the copy must not share mutable state with the task. Web worker processors
+	 * don't use this method as the task is serialized to the worker.
+	 * 
+	 * @return A new instance of the task.
+	 */
+	Task<?> copy();
+}
\ No newline at end of file
@@ -0,0 +1,19 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * Listener notified each time a task of a job is completed.
+ * 
+ * @author luc boutier
+ */
+public interface IJobProgressListener {
+	/**
+	 * Method triggered once a task of the job is completed (successfully or not). It is called from the thread that
+	 * processed the task and must be fast and thread safe.
+	 * 
+	 * @param job The job that contains the task.
+	 * @param completedTasks The number of tasks of the job that are completed.
+	 * @param successTasks The number of tasks of the job that completed successfully.
+	 * @param totalTasks The number of tasks in the job.
+	 */
+	void onProgress(Job job, int completedTasks, int successTasks, int totalTasks);
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * Indexable view on the results of a job which results are kept in an {@link IResultStore}. Results may be read
+ * lazily from the store, so the view must be released once the results are not needed anymore.
+ * 
+ * @author luc boutier
+ */
+public interface IJobResults {
+	/**
+	 * Get the number of results, which is the number of tasks of the job.
+	 * 
+	 * @return The number of results.
+	 */
+	int size();
+
+	/**
+	 * Get the result of a task.
+	 * 
+	 * @param taskIndex The index of the task in the job.
+	 * @return The result of the task (object returned by the execute method).
+	 */
+	Object get(int taskIndex);
+
+	/**
+	 * Release the resources used by the results, they can't be read anymore.
+	 */
+	void release();
+}
\ No newline at end of file
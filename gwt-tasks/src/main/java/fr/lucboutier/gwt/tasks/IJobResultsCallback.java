@@ -0,0 +1,16 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * Callback of a job which results are kept in an {@link IResultStore}. Processors that use a result store trigger
+ * {@link #onCompleted(IJobResults)} instead of {@link #onCompleted(Object[])}, other processors trigger the latter.
+ * 
+ * @author luc boutier
+ */
+public interface IJobResultsCallback extends IJobCompletedCallback {
+	/**
+	 * Method triggered once the job is completed.
+	 * 
+	 * @param results The view on the tasks results, which must be released once they are not needed anymore.
+	 */
+	void onCompleted(IJobResults results);
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * A task that encodes it's parameters and result itself instead of being serialized as JSON. In the web worker a single
+ * instance of the task is reused: each message is read in place into the fields of this instance and the result is
+ * written to a reused buffer, so that processing a task doesn't allocate a new task object graph and a new JSON
+ * document. The task class must still be a {@link Task}, pooled tasks don't need to be JsonSerializable.
+ * 
+ * @author luc boutier
+ */
+public interface IPooledTask {
+	/**
+	 * Write the parameters of the task, called by the job processor before the task is sent to the worker.
+	 * 
+	 * @param buffer The buffer to append the parameters to.
+	 */
+	void writeParameters(StringBuilder buffer);
+
+	/**
+	 * Reset the fields of the pooled instance from the parameters written by {@link #writeParameters(StringBuilder)},
+	 * called in the worker before each task is executed.
+	 * 
+	 * @param message The message received by the worker.
+	 * @param offset The index of the first character of the parameters in the message.
+	 */
+	void readParameters(String message, int offset);
+
+	/**
+	 * Write the result of the task, called in the worker once the task has been executed.
+	 * 
+	 * @param buffer The buffer to append the result to.
+	 */
+	void writeResult(StringBuilder buffer);
+
+	/**
+	 * Read the result written by {@link #writeResult(StringBuilder)}, called by the job processor on the task instance
+	 * of the job.
+	 * 
+	 * @param result The result written by the worker.
+	 * @return The result given to the job callback.
+	 */
+	Object readResult(String result);
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * Callback triggered once a job processor with a bounded queue has room for new submissions.
+ * 
+ * @author luc boutier
+ */
+public interface IReadyToAcceptCallback {
+	/**
+	 * Method triggered once the processor is ready to accept a new submission. The callback is triggered only once.
+	 */
+	void onReadyToAccept();
+}
\ No newline at end of file
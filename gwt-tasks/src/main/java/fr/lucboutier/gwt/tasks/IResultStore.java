@@ -0,0 +1,17 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * Storage of the results of a job while it is processed, for example to move large results out of the heap. Results
+ * of a job may be stored concurrently from several threads.
+ * 
+ * @author luc boutier
+ */
+public interface IResultStore extends IJobResults {
+	/**
+	 * Store the result of a task.
+	 * 
+	 * @param taskIndex The index of the task in the job.
+	 * @param result The result of the task.
+	 */
+	void set(int taskIndex, Object result);
+}
\ No newline at end of file
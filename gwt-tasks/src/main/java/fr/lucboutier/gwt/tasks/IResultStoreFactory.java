@@ -0,0 +1,16 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * Creates the {@link IResultStore} of each job processed by a job processor.
+ * 
+ * @author luc boutier
+ */
+public interface IResultStoreFactory {
+	/**
+	 * Create the store of the results of a job.
+	 * 
+	 * @param size The number of tasks of the job.
+	 * @return The result store.
+	 */
+	IResultStore create(int size);
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * Callback of a {@link StreamingJob}, triggered for each task result and once the job is completed.
+ * 
+ * @author luc boutier
+ */
+public interface IStreamingJobCallback {
+	/**
+	 * Method triggered once a task is completed. Tasks may complete out of order, and for the
+	 * {@link ThreadJobProcessor} this method may be called concurrently from several threads.
+	 * 
+	 * @param taskIndex The index of the task in the source.
+	 * @param result The task result (same as in {@link IJobCompletedCallback#onCompleted(Object[])}).
+	 * @param success <code>true</code> if the task succeeded.
+	 */
+	void onTaskCompleted(int taskIndex, Object result, boolean success);
+
+	/**
+	 * Method triggered once the source is exhausted and all the tasks are completed.
+	 * 
+	 * @param completedTasks The number of tasks processed.
+	 * @param successTasks The number of tasks that succeeded.
+	 */
+	void onCompleted(int completedTasks, int successTasks);
+}
\ No newline at end of file
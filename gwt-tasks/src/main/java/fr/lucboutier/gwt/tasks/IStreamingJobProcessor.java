@@ -0,0 +1,15 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * A job processor that can pull the tasks from a {@link StreamingJob}.
+ * 
+ * @author luc boutier
+ */
+public interface IStreamingJobProcessor extends IJobProcessor {
+	/**
+	 * Process the tasks of the streaming job, pulling them from the source only when the processor has room for them.
+	 * 
+	 * @param job The streaming job to process.
+	 */
+	void processStreamingJob(StreamingJob job);
+}
\ No newline at end of file
@@ -0,0 +1,178 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The idle workers of a job processor, grouped by task type. All the operations are in constant time: the workers are
+ * linked both in a list per task type, to take the most recently used worker of a type (which is the most likely to
+ * be warm), and in a global list in idle order, to evict the least recently used worker or the workers idle for too
+ * long.
+ * 
+ * @author luc boutier
+ */
+class IdleWorkerPool<W> {
+	private final Map<W, Node<W>> nodes = new HashMap<W, Node<W>>();
+	// most recently used node of each task type.
+	private final Map<String, Node<W>> heads = new HashMap<String, Node<W>>();
+	// most and least recently used nodes of all types.
+	private Node<W> mostRecent;
+	private Node<W> leastRecent;
+
+	/**
+	 * Add an idle worker.
+	 * 
+	 * @param taskType The type of the tasks the worker process.
+	 * @param worker The worker.
+	 * @param idleSinceMillis The time at which the worker became idle.
+	 */
+	void put(String taskType, W worker, double idleSinceMillis) {
+		Node<W> node = new Node<W>(taskType, worker, idleSinceMillis);
+		nodes.put(worker, node);
+		// link at the head of the type list.
+		Node<W> typeHead = heads.get(taskType);
+		node.nextOfType = typeHead;
+		if (typeHead != null) {
+			typeHead.previousOfType = node;
+		}
+		heads.put(taskType, node);
+		// link at the head of the global list.
+		node.next = mostRecent;
+		if (mostRecent != null) {
+			mostRecent.previous = node;
+		} else {
+			leastRecent = node;
+		}
+		mostRecent = node;
+	}
+
+	/**
+	 * Take the most recently used idle worker of a task type.
+	 * 
+	 * @param taskType The type of the task to process.
+	 * @return The worker or <code>null</code> if no worker of the type is idle.
+	 */
+	W take(String taskType) {
+		Node<W> node = heads.get(taskType);
+		if (node == null) {
+			return null;
+		}
+		unlink(node);
+		return node.worker;
+	}
+
+	/**
+	 * Remove an idle worker.
+	 * 
+	 * @param worker The worker to remove.
+	 * @return <code>true</code> if the worker was idle.
+	 */
+	boolean remove(W worker) {
+		Node<W> node = nodes.get(worker);
+		if (node == null) {
+			return false;
+		}
+		unlink(node);
+		return true;
+	}
+
+	/**
+	 * Remove the least recently used idle worker.
+	 * 
+	 * @return The worker or <code>null</code> if there is no idle worker.
+	 */
+	W evict() {
+		if (leastRecent == null) {
+			return null;
+		}
+		Node<W> node = leastRecent;
+		unlink(node);
+		return node.worker;
+	}
+
+	/**
+	 * Remove the least recently used idle worker if it is idle since before the given time.
+	 * 
+	 * @param idleSinceMillis The time before which idle workers are removed.
+	 * @return The worker or <code>null</code> if no worker is idle since before the given time.
+	 */
+	W evictIdleSince(double idleSinceMillis) {
+		if (leastRecent == null || leastRecent.idleSinceMillis > idleSinceMillis) {
+			return null;
+		}
+		return evict();
+	}
+
+	int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * Get the idle workers.
+	 * 
+	 * @return A copy of the idle workers, from the most to the least recently used.
+	 */
+	List<W> getWorkers() {
+		List<W> workers = new ArrayList<W>(nodes.size());
+		for (Node<W> node = mostRecent; node != null; node = node.next) {
+			workers.add(node.worker);
+		}
+		return workers;
+	}
+
+	/**
+	 * Remove all the idle workers.
+	 * 
+	 * @return The removed workers.
+	 */
+	List<W> clear() {
+		List<W> workers = getWorkers();
+		nodes.clear();
+		heads.clear();
+		mostRecent = null;
+		leastRecent = null;
+		return workers;
+	}
+
+	private void unlink(Node<W> node) {
+		nodes.remove(node.worker);
+		if (node.previousOfType != null) {
+			node.previousOfType.nextOfType = node.nextOfType;
+		} else if (node.nextOfType != null) {
+			heads.put(node.taskType, node.nextOfType);
+		} else {
+			heads.remove(node.taskType);
+		}
+		if (node.nextOfType != null) {
+			node.nextOfType.previousOfType = node.previousOfType;
+		}
+		if (node.previous != null) {
+			node.previous.next = node.next;
+		} else {
+			mostRecent = node.next;
+		}
+		if (node.next != null) {
+			node.next.previous = node.previous;
+		} else {
+			leastRecent = node.previous;
+		}
+	}
+
+	private static class Node<W> {
+		private final String taskType;
+		private final W worker;
+		private final double idleSinceMillis;
+		private Node<W> previous;
+		private Node<W> next;
+		private Node<W> previousOfType;
+		private Node<W> nextOfType;
+
+		public Node(String taskType, W worker, double idleSinceMillis) {
+			this.taskType = taskType;
+			this.worker = worker;
+			this.idleSinceMillis = idleSinceMillis;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,134 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.JsArrayString;
+
+/**
+ * An {@link ICheckpointStore} that persists the results in the IndexedDB of the browser, so that they survive a page
+ * reload. Results are stored with the [job id, task index] key in a single object store. Writes are asynchronous and
+ * the results saved just before a reload may be lost, their tasks are then processed again.
+ * 
+ * @author luc boutier
+ */
+public class IndexedDbCheckpointStore implements ICheckpointStore {
+	private static final String DEFAULT_DATABASE = "gwt-tasks-checkpoints";
+	private static final String STORE_NAME = "results";
+
+	// promise of the opened database.
+	private final JavaScriptObject database;
+
+	/**
+	 * Create a store in the default database.
+	 */
+	public IndexedDbCheckpointStore() {
+		this(DEFAULT_DATABASE);
+	}
+
+	/**
+	 * Create a store.
+	 * 
+	 * @param databaseName The name of the IndexedDB database to use.
+	 */
+	public IndexedDbCheckpointStore(String databaseName) {
+		this.database = open(databaseName, STORE_NAME);
+	}
+
+	/**
+	 * Check if the browser supports IndexedDB.
+	 * 
+	 * @return <code>true</code> if IndexedDB is available.
+	 */
+	public static native boolean isSupported() /*-{
+		return !!$wnd.indexedDB;
+	}-*/;
+
+	@Override
+	public void load(String jobId, ICheckpointLoadCallback callback) {
+		load(database, STORE_NAME, jobId, callback);
+	}
+
+	@Override
+	public void save(String jobId, int taskIndex, String result) {
+		save(database, STORE_NAME, jobId, taskIndex, result);
+	}
+
+	@Override
+	public void close(String jobId) {
+		// each result is saved in it's own transaction.
+	}
+
+	@Override
+	public void delete(String jobId) {
+		delete(database, STORE_NAME, jobId);
+	}
+
+	private static void onLoaded(ICheckpointLoadCallback callback, JsArrayInteger indexes, JsArrayString results) {
+		Map<Integer, String> savedResults = new HashMap<Integer, String>();
+		for (int i = 0; i < indexes.length(); i++) {
+			savedResults.put(indexes.get(i), results.get(i));
+		}
+		callback.onLoaded(savedResults);
+	}
+
+	private static native JavaScriptObject open(String databaseName, String storeName) /*-{
+		return new $wnd.Promise(function(resolve, reject) {
+			var request = $wnd.indexedDB.open(databaseName, 1);
+			request.onupgradeneeded = function() {
+				request.result.createObjectStore(storeName);
+			};
+			request.onsuccess = function() {
+				resolve(request.result);
+			};
+			request.onerror = function() {
+				reject(request.error);
+			};
+		});
+	}-*/;
+
+	private static native void load(JavaScriptObject database, String storeName, String jobId,
+			ICheckpointLoadCallback callback) /*-{
+		var indexes = [];
+		var results = [];
+		var onLoaded = $entry(function() {
+			@fr.lucboutier.gwt.tasks.IndexedDbCheckpointStore::onLoaded(Lfr/lucboutier/gwt/tasks/ICheckpointLoadCallback;Lcom/google/gwt/core/client/JsArrayInteger;Lcom/google/gwt/core/client/JsArrayString;)(callback, indexes, results);
+		});
+		database.then(function(db) {
+			var range = $wnd.IDBKeyRange.bound([ jobId, 0 ], [ jobId, Infinity ]);
+			var request = db.transaction(storeName, 'readonly').objectStore(storeName).openCursor(range);
+			request.onsuccess = function() {
+				var cursor = request.result;
+				if (cursor) {
+					indexes.push(cursor.key[1]);
+					results.push(cursor.value);
+					cursor['continue']();
+				} else {
+					onLoaded();
+				}
+			};
+			request.onerror = function() {
+				// the job is processed from the beginning.
+				indexes.length = 0;
+				results.length = 0;
+				onLoaded();
+			};
+		}, onLoaded);
+	}-*/;
+
+	private static native void save(JavaScriptObject database, String storeName, String jobId, int taskIndex,
+			String result) /*-{
+		database.then(function(db) {
+			db.transaction(storeName, 'readwrite').objectStore(storeName).put(result, [ jobId, taskIndex ]);
+		});
+	}-*/;
+
+	private static native void delete(JavaScriptObject database, String storeName, String jobId) /*-{
+		database.then(function(db) {
+			var range = $wnd.IDBKeyRange.bound([ jobId, 0 ], [ jobId, Infinity ]);
+			db.transaction(storeName, 'readwrite').objectStore(storeName)['delete'](range);
+		});
+	}-*/;
+}
\ No newline at end of file
@@ -8,6 +8,7 @@ package fr.lucboutier.gwt.tasks;
 public class Job {
 	private final IJobCompletedCallback callback;
 	private final Task<?>[] tasks;
+	private final String tenant;
 
 	/**
 	 * Create a new job.
@@ -16,8 +17,21 @@ public class Job {
 	 * @param callback The callback to trigger once the job is completed.
 	 */
 	public Job(Task<?>[] tasks, IJobCompletedCallback callback) {
+		this(tasks, callback, null);
+	}
+
+	/**
+	 * Create a new job for a tenant.
+	 * 
+	 * @param tasks The tasks part of the job.
+	 * @param callback The callback to trigger once the job is completed.
+	 * @param tenant The tenant (user, group...) that submits the job, used by the processors to share their resources
+	 *            fairly between the tenants (see {@link FairShareQueue}).
+	 */
+	public Job(Task<?>[] tasks, IJobCompletedCallback callback, String tenant) {
 		this.tasks = tasks;
 		this.callback = callback;
+		this.tenant = tenant;
 	}
 
 	public Task<?>[] getTasks() {
@@ -27,4 +41,8 @@ public class Job {
 	public IJobCompletedCallback getCallback() {
 		return callback;
 	}
+
+	public String getTenant() {
+		return tenant;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * Instrumentation SPI for the job processors. Implementations override the events they are interested in, all methods
+ * do nothing by default. Processors call the metrics from their processing threads (pool threads for the
+ * {@link ThreadJobProcessor}), implementations must be thread safe when used on the JVM.
+ * 
+ * @author luc boutier
+ */
+public abstract class JobProcessorMetrics {
+	/** Metrics that does nothing, processors skip all time measurement when they use it. */
+	public static final JobProcessorMetrics NO_OP = new JobProcessorMetrics() {
+	};
+
+	/**
+	 * Report the current depth of the processor queue (tasks for the {@link ThreadJobProcessor}, jobs for the
+	 * {@link WebWorkerJobProcessor}, remaining tasks for the {@link RepeatingCommandJobProcessor}).
+	 * 
+	 * @param depth The number of elements waiting in the queue.
+	 */
+	public void onQueueDepth(int depth) {
+	}
+
+	/**
+	 * Report the current number of workers (threads or web workers).
+	 * 
+	 * @param active The number of workers that are processing a task.
+	 * @param idle The number of workers that are waiting for a task.
+	 */
+	public void onWorkers(int active, int idle) {
+	}
+
+	/**
+	 * Report the completion of a task.
+	 * 
+	 * @param taskType The class name of the task.
+	 * @param latencyMillis The time between the start of the task processing and it's completion, in milliseconds.
+	 * @param success <code>true</code> if the task succeeded, <code>false</code> if it failed.
+	 */
+	public void onTaskCompleted(String taskType, double latencyMillis, boolean success) {
+	}
+
+	/**
+	 * Report the serialization of a message sent to a worker.
+	 * 
+	 * @param taskType The class name of the task.
+	 * @param durationMillis The serialization time in milliseconds.
+	 * @param messageLength The length of the message sent to the worker.
+	 */
+	public void onMessageSent(String taskType, double durationMillis, int messageLength) {
+	}
+
+	/**
+	 * Report the deserialization of a message received from a worker.
+	 * 
+	 * @param taskType The class name of the task.
+	 * @param durationMillis The deserialization time in milliseconds.
+	 * @param messageLength The length of the message received from the worker.
+	 */
+	public void onMessageReceived(String taskType, double durationMillis, int messageLength) {
+	}
+
+	/**
+	 * Report the creation of a worker (thread or web worker).
+	 * 
+	 * @param workerName The name of the worker.
+	 */
+	public void onWorkerSpawned(String workerName) {
+	}
+
+	/**
+	 * Report the termination of a worker (thread or web worker).
+	 * 
+	 * @param workerName The name of the worker.
+	 */
+	public void onWorkerTerminated(String workerName) {
+	}
+}
\ No newline at end of file
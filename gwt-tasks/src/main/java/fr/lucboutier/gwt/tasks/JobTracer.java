@@ -0,0 +1,187 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the timeline of the jobs processed by the job processors (queueing, worker bootstrap, messages serialization
+ * and tasks execution) as spans on named tracks, and exports them in the Chrome trace event format that can be loaded
+ * in chrome://tracing or https://ui.perfetto.dev. Timestamps are in ms and come from the clock of each processor
+ * (Duration in the browser and in the web workers, System.nanoTime on the JVM), so a tracer must only be shared by
+ * the processors of a single platform.
+ * 
+ * @author luc boutier
+ */
+public class JobTracer {
+	/** Track of the spans recorded in the main thread of the browser. */
+	public static final String MAIN_TRACK = "main";
+	public static final String CATEGORY_JOB = "job";
+	public static final String CATEGORY_TASK = "task";
+	public static final String CATEGORY_WORKER = "worker";
+	public static final String CATEGORY_MESSAGE = "message";
+
+	private static final int DEFAULT_MAX_SPANS = 100000;
+
+	private final int maxSpans;
+	private final List<Span> spans = new ArrayList<Span>();
+	// numeric ids of the tracks, in creation order.
+	private final Map<String, Integer> trackIds = new HashMap<String, Integer>();
+	private final List<String> tracks = new ArrayList<String>();
+	private int droppedSpans = 0;
+	private int nextJobId = 0;
+
+	/**
+	 * Create a tracer that keeps up to 100000 spans.
+	 */
+	public JobTracer() {
+		this(DEFAULT_MAX_SPANS);
+	}
+
+	/**
+	 * Create a tracer.
+	 * 
+	 * @param maxSpans The maximum number of spans kept, spans recorded once the tracer is full are dropped.
+	 */
+	public JobTracer(int maxSpans) {
+		this.maxSpans = maxSpans;
+	}
+
+	/**
+	 * Get the name of the track of a new job.
+	 * 
+	 * @return A unique track name.
+	 */
+	public synchronized String newJobTrack() {
+		return "job " + (++nextJobId);
+	}
+
+	/**
+	 * Get the name of the spans of a task, shared by all the job processors.
+	 * 
+	 * @param task The task.
+	 * @return The simple name of the task class.
+	 */
+	public static String getTaskName(Task<?> task) {
+		String taskClassName = task.getClass().getName();
+		return taskClassName.substring(taskClassName.lastIndexOf(".") + 1);
+	}
+
+	/**
+	 * Record a span.
+	 * 
+	 * @param track The track (thread, worker or job) of the span.
+	 * @param name The name of the span.
+	 * @param category The category of the span.
+	 * @param startMillis The start of the span in ms.
+	 * @param endMillis The end of the span in ms.
+	 */
+	public synchronized void addSpan(String track, String name, String category, double startMillis, double endMillis) {
+		if (spans.size() >= maxSpans) {
+			droppedSpans++;
+			return;
+		}
+		Integer trackId = trackIds.get(track);
+		if (trackId == null) {
+			trackId = tracks.size() + 1;
+			trackIds.put(track, trackId);
+			tracks.add(track);
+		}
+		spans.add(new Span(trackId, name, category, startMillis, Math.max(startMillis, endMillis)));
+	}
+
+	/**
+	 * Get the number of spans dropped as the tracer was full.
+	 * 
+	 * @return The number of dropped spans.
+	 */
+	public synchronized int getDroppedSpans() {
+		return droppedSpans;
+	}
+
+	/**
+	 * Remove all the recorded spans.
+	 */
+	public synchronized void clear() {
+		spans.clear();
+		trackIds.clear();
+		tracks.clear();
+		droppedSpans = 0;
+	}
+
+	/**
+	 * Export the recorded spans as a Chrome trace JSON document. Timestamps are relative to the first span.
+	 * 
+	 * @return The trace in the Chrome trace event format.
+	 */
+	public synchronized String toChromeTrace() {
+		double origin = Double.MAX_VALUE;
+		for (Span span : spans) {
+			origin = Math.min(origin, span.startMillis);
+		}
+		StringBuilder json = new StringBuilder("{\"traceEvents\":[");
+		for (int i = 0; i < tracks.size(); i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(i + 1)
+					.append(",\"args\":{\"name\":");
+			appendString(json, tracks.get(i));
+			json.append("}}");
+		}
+		for (Span span : spans) {
+			if (json.charAt(json.length() - 1) != '[') {
+				json.append(',');
+			}
+			json.append("{\"name\":");
+			appendString(json, span.name);
+			json.append(",\"cat\":");
+			appendString(json, span.category);
+			json.append(",\"ph\":\"X\",\"pid\":1,\"tid\":").append(span.trackId).append(",\"ts\":")
+					.append(toMicros(span.startMillis - origin)).append(",\"dur\":")
+					.append(toMicros(span.endMillis - span.startMillis)).append('}');
+		}
+		json.append("],\"displayTimeUnit\":\"ms\"");
+		if (droppedSpans > 0) {
+			json.append(",\"otherData\":{\"droppedSpans\":").append(droppedSpans).append('}');
+		}
+		return json.append('}').toString();
+	}
+
+	private static long toMicros(double millis) {
+		return Math.round(millis * 1000);
+	}
+
+	private static void appendString(StringBuilder json, String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < ' ') {
+				String hex = Integer.toHexString(c);
+				json.append("\\u").append("0000".substring(hex.length())).append(hex);
+			} else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+	private static class Span {
+		private final int trackId;
+		private final String name;
+		private final String category;
+		private final double startMillis;
+		private final double endMillis;
+
+		public Span(int trackId, String name, String category, double startMillis, double endMillis) {
+			this.trackId = trackId;
+			this.name = name;
+			this.category = category;
+			this.startMillis = startMillis;
+			this.endMillis = endMillis;
+		}
+	}
+}
\ No newline at end of file
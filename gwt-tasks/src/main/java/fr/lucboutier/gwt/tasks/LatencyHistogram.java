@@ -0,0 +1,74 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * Simple latency histogram with power of two buckets: bucket 0 counts latencies under 1ms, bucket n counts latencies
+ * in [2^(n-1), 2^n[ ms, the last bucket counts everything above.
+ * 
+ * @author luc boutier
+ */
+public class LatencyHistogram {
+	private static final int BUCKETS = 24;
+
+	private final long[] counts = new long[BUCKETS];
+	private long totalCount = 0;
+	private double totalMillis = 0;
+	private double maxMillis = 0;
+
+	/**
+	 * Record a latency.
+	 * 
+	 * @param latencyMillis The latency in milliseconds.
+	 */
+	public synchronized void record(double latencyMillis) {
+		int bucket = 0;
+		double upperBound = 1;
+		while (latencyMillis >= upperBound && bucket < BUCKETS - 1) {
+			bucket++;
+			upperBound *= 2;
+		}
+		counts[bucket]++;
+		totalCount++;
+		totalMillis += latencyMillis;
+		if (latencyMillis > maxMillis) {
+			maxMillis = latencyMillis;
+		}
+	}
+
+	/**
+	 * Get the upper bound of the bucket that contains the given percentile.
+	 * 
+	 * @param percentile The percentile between 0 and 100.
+	 * @return The upper bound (in milliseconds) of the latency for the given percentile.
+	 */
+	public synchronized double getPercentile(double percentile) {
+		long rank = (long) Math.ceil(totalCount * percentile / 100);
+		long count = 0;
+		double upperBound = 1;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts[i];
+			if (count >= rank && count > 0) {
+				return Math.min(upperBound, maxMillis);
+			}
+			upperBound *= 2;
+		}
+		return maxMillis;
+	}
+
+	public synchronized long[] getCounts() {
+		long[] copy = new long[BUCKETS];
+		System.arraycopy(counts, 0, copy, 0, BUCKETS);
+		return copy;
+	}
+
+	public synchronized long getTotalCount() {
+		return totalCount;
+	}
+
+	public synchronized double getMeanMillis() {
+		return totalCount == 0 ? 0 : totalMillis / totalCount;
+	}
+
+	public synchronized double getMaxMillis() {
+		return maxMillis;
+	}
+}
\ No newline at end of file
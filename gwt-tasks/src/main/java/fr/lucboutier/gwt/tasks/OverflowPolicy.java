@@ -0,0 +1,23 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * Policy applied by a job processor when its queue is full and a new job (or task) is submitted.
+ * 
+ * @author luc boutier
+ */
+public enum OverflowPolicy {
+	/**
+	 * Block the submitting thread until there is room in the queue. As the browser UI thread can't be blocked, the
+	 * {@link WebWorkerJobProcessor} handles this policy as {@link #REJECT}.
+	 */
+	BLOCK,
+	/**
+	 * Reject the submission with an exception. When only some of the tasks of a job are rejected by the
+	 * {@link ThreadJobProcessor}, they are reported as failed to the job callback instead.
+	 */
+	REJECT,
+	/** Execute the submission directly in the submitting thread. */
+	CALLER_RUNS,
+	/** Drop the oldest submission that is still waiting in the queue and queue the new one. */
+	DROP_OLDEST
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+package fr.lucboutier.gwt.tasks;
+
+/**
+ * A job that streams inputs through a chain of {@link PipelineStage} workers. Intermediate results go directly from a
+ * stage worker to the next one, the main thread only receives the outputs of the last stage.
+ * 
+ * @author luc boutier
+ */
+public class PipelineJob {
+	private final String[] stageNames;
+	private final String[] inputs;
+	private final IJobCompletedCallback callback;
+
+	/**
+	 * Create a new pipeline job.
+	 * 
+	 * @param stageNames The names of the GWT modules of the stage workers, in processing order.
+	 * @param inputs The inputs of the first stage.
+	 * @param callback The callback to trigger once all the inputs went through the pipeline. Results are the outputs
+	 *            of the last stage (or <code>null</code> for failed items) in the inputs order.
+	 */
+	public PipelineJob(String[] stageNames, String[] inputs, IJobCompletedCallback callback) {
+		this.stageNames = stageNames;
+		this.inputs = inputs;
+		this.callback = callback;
+	}
+
+	public String[] getStageNames() {
+		return stageNames;
+	}
+
+	public String[] getInputs() {
+		return inputs;
+	}
+
+	public IJobCompletedCallback getCallback() {
+		return callback;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,105 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
+
+import fr.lucboutier.gwt.webworker.client.MessageChannel;
+import fr.lucboutier.gwt.webworker.client.MessageEvent;
+import fr.lucboutier.gwt.webworker.client.MessageHandler;
+import fr.lucboutier.gwt.webworker.client.MessagePort;
+import fr.lucboutier.gwt.webworker.client.Worker;
+
+/**
+ * Process {@link PipelineJob}s: one web worker is started per stage and consecutive stages are wired with
+ * {@link MessageChannel}s so that data streams from worker to worker. Workers are terminated once the job is completed.
+ * 
+ * @author luc boutier
+ */
+public class PipelineJobProcessor {
+	private static final Logger LOGGER = Logger.getLogger(PipelineJobProcessor.class.getName());
+
+	/**
+	 * Process all the inputs of the pipeline and call the onComplete method once done.
+	 * 
+	 * @param job The pipeline job to process.
+	 */
+	public void processPipeline(final PipelineJob job) {
+		final String[] stageNames = job.getStageNames();
+		final String[] inputs = job.getInputs();
+		if (inputs.length == 0 || stageNames.length == 0) {
+			job.getCallback().onCompleted(inputs);
+			return;
+		}
+
+		final Worker[] workers = new Worker[stageNames.length];
+		final Object[] results = new Object[inputs.length];
+		final MessageHandler outputHandler = new MessageHandler() {
+			private int completed = 0;
+
+			@Override
+			public void onMessage(MessageEvent event) {
+				if (processOutput(event.getDataAsString(), results)) {
+					completed++;
+					if (completed == results.length) {
+						for (Worker worker : workers) {
+							worker.terminate();
+						}
+						job.getCallback().onCompleted(results);
+					}
+				}
+			}
+		};
+
+		// the main thread feeds the first stage through it's own channel.
+		MessageChannel inputChannel = MessageChannel.create();
+		MessagePort stageInput = inputChannel.getPort2();
+		for (int i = 0; i < stageNames.length; i++) {
+			workers[i] = Worker.create(WebWorkerJobProcessor.getWorkerPath(stageNames[i]));
+			// every stage may report errors, the last one reports the outputs.
+			workers[i].setOnMessage(outputHandler);
+
+			JsArray<MessagePort> ports = JavaScriptObject.createArray().cast();
+			ports.push(stageInput);
+			if (i < stageNames.length - 1) {
+				MessageChannel channel = MessageChannel.create();
+				ports.push(channel.getPort1());
+				stageInput = channel.getPort2();
+			}
+			workers[i].postMessage(PipelineStage.PIPELINE_WIRE_FLAG, ports);
+		}
+
+		MessagePort pipelineInput = inputChannel.getPort1();
+		for (int i = 0; i < inputs.length; i++) {
+			pipelineInput.postMessage(i + String.valueOf(Task.TASK_ID_SEPARATOR) + inputs[i]);
+		}
+	}
+
+	/**
+	 * Process a message received from a stage worker.
+	 * 
+	 * @return <code>true</code> if the message completes an item of the pipeline.
+	 */
+	private boolean processOutput(String message, Object[] results) {
+		boolean success = message.startsWith(Task.TASK_COMPLETED_FLAG);
+		if (!success && !message.startsWith(Task.TASK_ERROR_FLAG)) {
+			LOGGER.warning("Received unexpected message from pipeline worker " + message);
+			return false;
+		}
+		int flagLength = success ? Task.TASK_COMPLETED_FLAG.length() : Task.TASK_ERROR_FLAG.length();
+		int separatorIndex = message.indexOf(Task.TASK_ID_SEPARATOR, flagLength);
+		int index = Integer.parseInt(message.substring(flagLength, separatorIndex));
+		String data = message.substring(separatorIndex + 1);
+		if (success) {
+			results[index] = data;
+			if (LOGGER.isLoggable(Level.FINER)) {
+				LOGGER.finer("Pipeline item " + (index + 1) + " / " + results.length + " completed");
+			}
+		} else {
+			LOGGER.severe("Pipeline item <" + index + "> failed with message <" + data + ">");
+		}
+		return true;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package fr.lucboutier.gwt.tasks;
+
+import com.google.gwt.core.client.JsArray;
+
+import fr.lucboutier.gwt.webworker.client.DedicatedWorkerEntryPoint;
+import fr.lucboutier.gwt.webworker.client.MessageEvent;
+import fr.lucboutier.gwt.webworker.client.MessageHandler;
+import fr.lucboutier.gwt.webworker.client.MessagePort;
+
+/**
+ * A stage of a {@link PipelineJob}. Each stage runs in it's own web worker: it receives it's inputs from the previous
+ * stage through a {@link MessagePort} and streams it's outputs directly to the next stage, the last stage sends it's
+ * outputs to the main thread.
+ * 
+ * @author luc boutier
+ */
+public abstract class PipelineStage extends DedicatedWorkerEntryPoint implements MessageHandler {
+	/** Flag of the message sent by the processor to give the stage it's input and output ports. */
+	public static final String PIPELINE_WIRE_FLAG = "TPW::";
+
+	private MessagePort outputPort;
+
+	@Override
+	public void onWorkerLoad() {
+		// register for the wiring message.
+		setOnMessage(this);
+	}
+
+	/**
+	 * This method is used for web-worker only.
+	 * 
+	 * @param event The wiring message event, ports are the input port and the output port (if not the last stage).
+	 */
+	public void onMessage(MessageEvent event) {
+		if (!event.getDataAsString().startsWith(PIPELINE_WIRE_FLAG)) {
+			return;
+		}
+		JsArray<MessagePort> ports = event.getPorts();
+		MessagePort inputPort = ports.get(0);
+		this.outputPort = ports.length() > 1 ? ports.get(1) : null;
+		inputPort.setOnMessage(new MessageHandler() {
+			@Override
+			public void onMessage(MessageEvent event) {
+				processItem(event.getDataAsString());
+			}
+		});
+	}
+
+	private void processItem(String message) {
+		// messages are <item id>|<data>
+		int separatorIndex = message.indexOf(Task.TASK_ID_SEPARATOR);
+		String idPrefix = message.substring(0, separatorIndex + 1);
+		try {
+			String output = process(message.substring(separatorIndex + 1));
+			if (this.outputPort == null) {
+				postMessage(Task.TASK_COMPLETED_FLAG + idPrefix + output);
+			} else {
+				this.outputPort.postMessage(idPrefix + output);
+			}
+		} catch (Throwable t) {
+			// errors are reported directly to the main thread.
+			postMessage(Task.TASK_ERROR_FLAG + idPrefix + t.getMessage());
+		}
+	}
+
+	/**
+	 * Process an item of the pipeline.
+	 * 
+	 * @param input The output of the previous stage (or the pipeline input for the first stage).
+	 * @return The input of the next stage (or the pipeline output for the last stage).
+	 */
+	public abstract String process(String input);
+}
\ No newline at end of file
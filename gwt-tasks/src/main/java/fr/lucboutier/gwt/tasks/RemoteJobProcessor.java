@@ -0,0 +1,148 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gwt.core.shared.GWT;
+import com.google.gwt.xhr.client.ReadyStateChangeHandler;
+import com.google.gwt.xhr.client.XMLHttpRequest;
+import com.kfuntak.gwt.json.serialization.client.JsonSerializable;
+import com.kfuntak.gwt.json.serialization.client.Serializer;
+
+/**
+ * A job processor that sends the tasks to a server endpoint (the <code>TaskServlet</code> of the gwt-tasks-server
+ * module) to be processed on the JVM. Tasks must be {@link JsonSerializable}.
+ * 
+ * The tasks of a job are posted in a single request, one task per line (<code>index|className|task</code>). The
+ * server streams the results in batches as they are completed, one result per line using the {@link Task} completion
+ * and error flags (<code>TC::index|task</code> or <code>TERR::index|message</code>), so results are read while the
+ * response is loading.
+ * 
+ * @author luc boutier
+ */
+public class RemoteJobProcessor implements IJobProcessor {
+	private static final Logger LOGGER = Logger.getLogger(RemoteJobProcessor.class.getName());
+
+	/** Content type of the requests and responses. */
+	public static final String CONTENT_TYPE = "text/plain; charset=utf-8";
+	/** Separates the tasks in the requests and the results in the responses. */
+	public static final char LINE_SEPARATOR = '\n';
+
+	private final Serializer serializer = GWT.create(Serializer.class);
+
+	private final String url;
+
+	/**
+	 * Create a new {@link RemoteJobProcessor}.
+	 * 
+	 * @param url The url of the server endpoint.
+	 */
+	public RemoteJobProcessor(String url) {
+		this.url = url;
+	}
+
+	@Override
+	public void processJob(final Job job) {
+		final Task<?>[] tasks = job.getTasks();
+		if (tasks == null || tasks.length == 0) {
+			job.getCallback().onCompleted(tasks);
+			return;
+		}
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < tasks.length; i++) {
+			if (!(tasks[i] instanceof JsonSerializable)) {
+				throw new IllegalArgumentException("Task <" + tasks[i].getClass().getName()
+						+ "> must be JsonSerializable to be processed remotely.");
+			}
+			body.append(i).append(Task.TASK_ID_SEPARATOR).append(tasks[i].getClass().getName())
+					.append(Task.TASK_ID_SEPARATOR).append(serializer.serialize(tasks[i])).append(LINE_SEPARATOR);
+		}
+
+		final RemoteJob remoteJob = new RemoteJob(job);
+		XMLHttpRequest request = XMLHttpRequest.create();
+		request.open("POST", url);
+		request.setRequestHeader("Content-Type", CONTENT_TYPE);
+		request.setOnReadyStateChange(new ReadyStateChangeHandler() {
+			@Override
+			public void onReadyStateChange(XMLHttpRequest xhr) {
+				int readyState = xhr.getReadyState();
+				if (readyState == XMLHttpRequest.LOADING || readyState == XMLHttpRequest.DONE) {
+					remoteJob.readResults(xhr.getResponseText());
+				}
+				if (readyState == XMLHttpRequest.DONE) {
+					xhr.clearOnReadyStateChange();
+					remoteJob.complete(xhr.getStatus());
+				}
+			}
+		});
+		request.send(body.toString());
+	}
+
+	/** Processing state of a job. */
+	private class RemoteJob {
+		private final Job job;
+		private final Object[] results;
+		private final boolean[] completed;
+		private int completedCount = 0;
+		private int successCount = 0;
+		// index of the first character of the response that has not been read.
+		private int readIndex = 0;
+
+		public RemoteJob(Job job) {
+			this.job = job;
+			this.results = new Object[job.getTasks().length];
+			this.completed = new boolean[results.length];
+		}
+
+		/** Read the complete lines of the response that have not been read yet. */
+		private void readResults(String responseText) {
+			int lineEnd = responseText.indexOf(LINE_SEPARATOR, readIndex);
+			while (lineEnd >= 0) {
+				readResult(responseText.substring(readIndex, lineEnd));
+				readIndex = lineEnd + 1;
+				lineEnd = responseText.indexOf(LINE_SEPARATOR, readIndex);
+			}
+		}
+
+		private void readResult(String line) {
+			boolean success = line.startsWith(Task.TASK_COMPLETED_FLAG);
+			if (!success && !line.startsWith(Task.TASK_ERROR_FLAG)) {
+				LOGGER.warning("Received unexpected line from server " + line);
+				return;
+			}
+			int flagLength = success ? Task.TASK_COMPLETED_FLAG.length() : Task.TASK_ERROR_FLAG.length();
+			int separatorIndex = line.indexOf(Task.TASK_ID_SEPARATOR, flagLength);
+			int index = separatorIndex < 0 ? -1 : Integer.parseInt(line.substring(flagLength, separatorIndex));
+			if (index < 0 || index >= results.length || completed[index]) {
+				LOGGER.warning("Received result for an unknown task from server " + line);
+				return;
+			}
+			String data = line.substring(separatorIndex + 1);
+			if (success) {
+				results[index] = serializer.deSerialize(data);
+				successCount++;
+			} else {
+				LOGGER.severe("Task <" + job.getTasks()[index].getClass().getName() + "> failed with message <"
+						+ data + ">");
+			}
+			completed[index] = true;
+			completedCount++;
+			if (LOGGER.isLoggable(Level.FINE)) {
+				LOGGER.fine("Task completed, total completed <" + completedCount + "> on <" + results.length + ">");
+			}
+		}
+
+		/** Called once the response is completely received. */
+		private void complete(int status) {
+			if (completedCount < results.length) {
+				LOGGER.severe("Remote job ended with status <" + status + "> before all the tasks were completed <"
+						+ completedCount + "> on <" + results.length + ">");
+			}
+			if (successCount == results.length) {
+				job.getCallback().onCompleted(results);
+			} else {
+				job.getCallback().onCompleted(job.getTasks());
+			}
+		}
+	}
+}
\ No newline at end of file
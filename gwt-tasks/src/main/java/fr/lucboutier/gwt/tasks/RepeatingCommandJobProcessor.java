@@ -1,8 +1,10 @@
 package fr.lucboutier.gwt.tasks;
 
+import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 
@@ -11,13 +13,58 @@ import com.google.gwt.core.client.Scheduler.RepeatingCommand;
  * 
  * @author luc boutier
  */
-public class RepeatingCommandJobProcessor implements IJobProcessor {
+public class RepeatingCommandJobProcessor implements IStreamingJobProcessor {
 	private static final Logger LOGGER = Logger.getLogger(RepeatingCommandJobProcessor.class.getName());
 
+	private JobProcessorMetrics metrics = JobProcessorMetrics.NO_OP;
+	private JobTracer tracer;
+	// all the tasks are processed in the main thread which is the only worker.
+	private final WorkerStates workerStates = new WorkerStates();
+
+	/**
+	 * Set the metrics that will receive the processor events.
+	 * 
+	 * @param metrics The metrics to use, {@link JobProcessorMetrics#NO_OP} to disable instrumentation.
+	 */
+	public void setMetrics(JobProcessorMetrics metrics) {
+		this.metrics = metrics == null ? JobProcessorMetrics.NO_OP : metrics;
+	}
+
+	/**
+	 * Set a tracer to record the timeline of the jobs and the execution of the tasks in the main thread.
+	 * 
+	 * @param tracer The tracer to use, <code>null</code> to disable tracing.
+	 */
+	public void setTracer(JobTracer tracer) {
+		this.tracer = tracer;
+	}
+
+	/**
+	 * Share a read-only value with all the tasks processed by this processor.
+	 * 
+	 * @param value The value to share.
+	 * @return The broadcast value, which id must be set in the tasks that use it.
+	 */
+	public <V> Broadcast<V> broadcast(V value) {
+		return Broadcast.create(value);
+	}
+
+	/**
+	 * Release a broadcast value, tasks can't get it anymore.
+	 * 
+	 * @param broadcast The broadcast value to release.
+	 */
+	public void release(Broadcast<?> broadcast) {
+		Broadcast.release(broadcast.getId());
+	}
+
 	@Override
 	public void processJob(final Job job) {
 		final Task<?>[] tasks = job.getTasks();
 		final Object[] results = new Object[tasks.length];
+		final JobTracer jobTracer = tracer;
+		final String traceTrack = jobTracer == null ? null : jobTracer.newJobTrack();
+		final double createdMillis = jobTracer == null ? 0 : Duration.currentTimeMillis();
 		RepeatingCommand repeatingCommand = new RepeatingCommand() {
 			int current = 0;
 
@@ -26,14 +73,73 @@ public class RepeatingCommandJobProcessor implements IJobProcessor {
 					if (LOGGER.isLoggable(Level.FINER)) {
 						LOGGER.finer("Task " + (current + 1) + "/" + tasks.length);
 					}
-					results[current] = tasks[current].execute();
+					workerStates.bind(tasks[current]);
+					boolean metered = metrics != JobProcessorMetrics.NO_OP;
+					if (metered || jobTracer != null) {
+						double start = Duration.currentTimeMillis();
+						results[current] = tasks[current].execute();
+						double end = Duration.currentTimeMillis();
+						if (metered) {
+							metrics.onTaskCompleted(tasks[current].getClass().getName(), end - start, true);
+							metrics.onQueueDepth(tasks.length - current - 1);
+						}
+						if (jobTracer != null) {
+							if (current == 0) {
+								jobTracer.addSpan(traceTrack, "queued", JobTracer.CATEGORY_JOB, createdMillis, start);
+							}
+							jobTracer.addSpan(JobTracer.MAIN_TRACK, JobTracer.getTaskName(tasks[current]),
+									JobTracer.CATEGORY_TASK, start, end);
+						}
+					} else {
+						results[current] = tasks[current].execute();
+					}
 					current++;
 					return true;
 				}
+				if (jobTracer != null) {
+					jobTracer.addSpan(traceTrack, "job", JobTracer.CATEGORY_JOB, createdMillis,
+							Duration.currentTimeMillis());
+				}
 				job.getCallback().onCompleted(results);
 				return false;
 			}
 		};
 		Scheduler.get().scheduleIncremental(repeatingCommand);
 	}
+
+	@Override
+	public void processStreamingJob(final StreamingJob job) {
+		final Iterator<? extends Task<?>> source = job.getSource();
+		RepeatingCommand repeatingCommand = new RepeatingCommand() {
+			int current = 0;
+			int success = 0;
+
+			public boolean execute() {
+				if (source.hasNext()) {
+					// a single task is materialized at a time.
+					Task<?> task = source.next();
+					workerStates.bind(task);
+					double start = metrics != JobProcessorMetrics.NO_OP ? Duration.currentTimeMillis() : 0;
+					Object result = null;
+					boolean taskSuccess = false;
+					try {
+						result = task.execute();
+						taskSuccess = true;
+						success++;
+					} catch (RuntimeException e) {
+						LOGGER.log(Level.SEVERE, "Error while processing task", e);
+					}
+					if (metrics != JobProcessorMetrics.NO_OP) {
+						metrics.onTaskCompleted(task.getClass().getName(), Duration.currentTimeMillis() - start,
+								taskSuccess);
+					}
+					job.getCallback().onTaskCompleted(current++, result, taskSuccess);
+					return true;
+				}
+				job.getCallback().onCompleted(current, success);
+				return false;
+			}
+		};
+		Scheduler.get().scheduleIncremental(repeatingCommand);
+	}
 }
\ No newline at end of file
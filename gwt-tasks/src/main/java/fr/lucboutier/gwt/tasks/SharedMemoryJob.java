@@ -0,0 +1,63 @@
+package fr.lucboutier.gwt.tasks;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+import fr.lucboutier.gwt.webworker.client.Atomics;
+import fr.lucboutier.gwt.webworker.client.SharedArrayBuffer;
+import fr.lucboutier.gwt.webworker.client.SharedInt32Array;
+
+/**
+ * A job which {@link SharedMemoryTask}s all work on a single {@link SharedArrayBuffer}. The
+ * {@link WebWorkerJobProcessor} posts the buffer once to each worker instead of copying the data in every task message,
+ * each task only carries it's offset and length. Workers atomically increment a shared completion counter that can be
+ * read from the main thread with {@link #getCompletedTasks()}.
+ * 
+ * @author luc boutier
+ */
+public class SharedMemoryJob extends Job {
+	private final SharedArrayBuffer buffer;
+	private final SharedInt32Array completionCounter;
+
+	/**
+	 * Create a new shared memory job.
+	 * 
+	 * @param buffer The memory region shared by all the tasks of the job.
+	 * @param tasks The tasks part of the job.
+	 * @param callback The callback to trigger once the job is completed.
+	 */
+	public SharedMemoryJob(SharedArrayBuffer buffer, SharedMemoryTask<?>[] tasks, IJobCompletedCallback callback) {
+		super(tasks, callback);
+		this.buffer = buffer;
+		this.completionCounter = SharedInt32Array.create(SharedArrayBuffer.create(4));
+	}
+
+	public SharedArrayBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Get the number of tasks completed by the workers, read atomically from the shared completion counter.
+	 * 
+	 * @return The number of completed tasks.
+	 */
+	public int getCompletedTasks() {
+		return Atomics.load(completionCounter, 0);
+	}
+
+	/**
+	 * Get the message to post to a worker to give it access to the shared memory of the job.
+	 * 
+	 * @return The message that contains the shared buffer and the completion counter.
+	 */
+	JavaScriptObject getSharedMemoryMessage() {
+		return createSharedMemoryMessage(buffer, completionCounter);
+	}
+
+	private static native JavaScriptObject createSharedMemoryMessage(SharedArrayBuffer buffer,
+			SharedInt32Array completionCounter) /*-{
+		return {
+			buffer : buffer,
+			completionCounter : completionCounter
+		};
+	}-*/;
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package fr.lucboutier.gwt.tasks;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.kfuntak.gwt.json.serialization.client.JsonSerializable;
+
+import fr.lucboutier.gwt.webworker.client.Atomics;
+import fr.lucboutier.gwt.webworker.client.MessageEvent;
+import fr.lucboutier.gwt.webworker.client.SharedArrayBuffer;
+import fr.lucboutier.gwt.webworker.client.SharedInt32Array;
+
+/**
+ * A task that works on a part (offset and length) of the memory shared by all the tasks of a {@link SharedMemoryJob}.
+ * Only the offset and the length are serialized in the task message, the shared buffer is received once by the worker.
+ * Shared memory tasks can only be processed by the {@link WebWorkerJobProcessor}.
+ * 
+ * @author luc boutier
+ */
+public abstract class SharedMemoryTask<T extends Object> extends Task<T> implements JsonSerializable {
+	// the shared memory received by the worker (one per worker global scope).
+	private static SharedArrayBuffer sharedBuffer;
+	private static SharedInt32Array completionCounter;
+
+	private int offset;
+	private int length;
+
+	@Override
+	public void onMessage(MessageEvent event) {
+		if (event.isDataString()) {
+			super.onMessage(event);
+		} else {
+			// the processor sends the shared memory before the first task of a job.
+			JavaScriptObject data = event.getData();
+			sharedBuffer = getBuffer(data);
+			completionCounter = getCompletionCounter(data);
+		}
+	}
+
+	@Override
+	public final T execute() {
+		T result = execute(sharedBuffer, this.offset, this.length);
+		Atomics.add(completionCounter, 0, 1);
+		return result;
+	}
+
+	/**
+	 * Execute the task on it's part of the shared memory.
+	 * 
+	 * @param buffer The memory shared by all the tasks of the job.
+	 * @param offset The offset of the part of the buffer to process.
+	 * @param length The length of the part of the buffer to process.
+	 * @return A result object.
+	 */
+	public abstract T execute(SharedArrayBuffer buffer, int offset, int length);
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public void setOffset(int offset) {
+		this.offset = offset;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public void setLength(int length) {
+		this.length = length;
+	}
+
+	private static native SharedArrayBuffer getBuffer(JavaScriptObject data) /*-{
+		return data.buffer;
+	}-*/;
+
+	private static native SharedInt32Array getCompletionCounter(JavaScriptObject data) /*-{
+		return data.completionCounter;
+	}-*/;
+}
\ No newline at end of file
@@ -0,0 +1,156 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gwt.core.shared.GWT;
+import com.kfuntak.gwt.json.serialization.client.JsonSerializable;
+import com.kfuntak.gwt.json.serialization.client.Serializer;
+
+import fr.lucboutier.gwt.webworker.client.MessageEvent;
+import fr.lucboutier.gwt.webworker.client.MessageHandler;
+import fr.lucboutier.gwt.webworker.client.MessagePort;
+import fr.lucboutier.gwt.webworker.client.SharedWorker;
+
+/**
+ * A job processor that delegates the tasks to a shared worker coordinating a single pool of web workers for all the
+ * pages of the origin. This caps the total number of workers whatever the number of opened pages and avoids to load
+ * the same task modules in every page.
+ * 
+ * The application must compile the <code>fr.lucboutier.gwt.SharedWorkerPool</code> module next to it's task modules.
+ * If shared workers are not supported by the browser, use a {@link WebWorkerJobProcessor} instead.
+ * 
+ * @author luc boutier
+ */
+public class SharedWorkerJobProcessor implements IJobProcessor {
+	private static final Logger LOGGER = Logger.getLogger(SharedWorkerJobProcessor.class.getName());
+
+	/** Name of the shared worker, all the pages that use this name share the same pool. */
+	public static final String POOL_NAME = "gwt-tasks-pool";
+	private static final String POOL_MODULE = "SharedWorkerPool";
+
+	private final Serializer serializer = GWT.create(Serializer.class);
+
+	private final boolean cacheResults;
+	private final MessagePort port;
+	private final Map<Integer, PendingTask> pendingTasks = new HashMap<Integer, PendingTask>();
+	private int nextRequestId = 0;
+
+	/**
+	 * Create a {@link SharedWorkerJobProcessor} that doesn't cache the results of the tasks.
+	 */
+	public SharedWorkerJobProcessor() {
+		this(false);
+	}
+
+	/**
+	 * Create a new {@link SharedWorkerJobProcessor}.
+	 * 
+	 * @param cacheResults <code>true</code> if the results of the tasks can be served from the cache shared by all the
+	 *            pages: the tasks must be deterministic as the cache key is the serialized task.
+	 */
+	public SharedWorkerJobProcessor(boolean cacheResults) {
+		this.cacheResults = cacheResults;
+		SharedWorker sharedWorker = SharedWorker.create(WebWorkerJobProcessor.getWorkerPath(POOL_MODULE), POOL_NAME);
+		this.port = sharedWorker.getPort();
+		this.port.setOnMessage(new MessageHandler() {
+			@Override
+			public void onMessage(MessageEvent event) {
+				processPoolMessage(event.getDataAsString());
+			}
+		});
+		this.port.start();
+	}
+
+	@Override
+	public void processJob(Job job) {
+		Task<?>[] tasks = job.getTasks();
+		if (tasks.length == 0) {
+			job.getCallback().onCompleted(new Object[0]);
+			return;
+		}
+		SharedJob sharedJob = new SharedJob(job);
+		String cacheFlag = cacheResults ? "1" : "0";
+		for (int i = 0; i < tasks.length; i++) {
+			int requestId = nextRequestId++;
+			pendingTasks.put(requestId, new PendingTask(sharedJob, i));
+			String payload;
+			if (tasks[i] instanceof IPooledTask) {
+				StringBuilder buffer = new StringBuilder();
+				((IPooledTask) tasks[i]).writeParameters(buffer);
+				payload = buffer.toString();
+			} else {
+				payload = tasks[i] instanceof JsonSerializable ? serializer.serialize(tasks[i]) : "start!";
+			}
+			port.postMessage(requestId + String.valueOf(Task.TASK_ID_SEPARATOR) + cacheFlag + Task.TASK_ID_SEPARATOR
+					+ WebWorkerJobProcessor.getWorkerName(tasks[i]) + Task.TASK_ID_SEPARATOR + payload);
+		}
+	}
+
+	private void processPoolMessage(String message) {
+		boolean success = message.startsWith(Task.TASK_COMPLETED_FLAG);
+		if (!success && !message.startsWith(Task.TASK_ERROR_FLAG)) {
+			LOGGER.warning("Received unexpected message from shared worker " + message);
+			return;
+		}
+		int flagLength = success ? Task.TASK_COMPLETED_FLAG.length() : Task.TASK_ERROR_FLAG.length();
+		int separatorIndex = message.indexOf(Task.TASK_ID_SEPARATOR, flagLength);
+		PendingTask pendingTask = separatorIndex < 0 ? null : pendingTasks.remove(Integer.valueOf(message.substring(
+				flagLength, separatorIndex)));
+		if (pendingTask == null) {
+			LOGGER.warning("Received message for an unknown task from shared worker " + message);
+			return;
+		}
+		String data = message.substring(separatorIndex + 1);
+		SharedJob sharedJob = pendingTask.sharedJob;
+		Task<?> sourceTask = sharedJob.job.getTasks()[pendingTask.taskIndex];
+		if (success) {
+			sharedJob.successCount++;
+			if (sourceTask instanceof IPooledTask) {
+				sharedJob.results[pendingTask.taskIndex] = ((IPooledTask) sourceTask).readResult(data);
+			} else if (sourceTask instanceof JsonSerializable) {
+				sharedJob.results[pendingTask.taskIndex] = serializer.deSerialize(data);
+			}
+		} else {
+			LOGGER.severe("Task <" + sourceTask.getClass().getName() + "> failed with message <" + data + ">");
+		}
+		sharedJob.completedCount++;
+		if (LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.fine("Task completed, total completed <" + sharedJob.completedCount + "> on <"
+					+ sharedJob.results.length + ">");
+		}
+		if (sharedJob.completedCount == sharedJob.results.length) {
+			if (sharedJob.successCount == sharedJob.results.length) {
+				sharedJob.job.getCallback().onCompleted(sharedJob.results);
+			} else {
+				sharedJob.job.getCallback().onCompleted(sharedJob.job.getTasks());
+			}
+		}
+	}
+
+	/** Processing state of a job. */
+	private static class SharedJob {
+		private final Job job;
+		private final Object[] results;
+		private int completedCount = 0;
+		private int successCount = 0;
+
+		public SharedJob(Job job) {
+			this.job = job;
+			this.results = new Object[job.getTasks().length];
+		}
+	}
+
+	/** A task sent to the shared worker. */
+	private static class PendingTask {
+		private final SharedJob sharedJob;
+		private final int taskIndex;
+
+		public PendingTask(SharedJob sharedJob, int taskIndex) {
+			this.sharedJob = sharedJob;
+			this.taskIndex = taskIndex;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,176 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import fr.lucboutier.gwt.webworker.client.MessageEvent;
+import fr.lucboutier.gwt.webworker.client.MessageHandler;
+import fr.lucboutier.gwt.webworker.client.MessagePort;
+import fr.lucboutier.gwt.webworker.client.SharedWorkerEntryPoint;
+import fr.lucboutier.gwt.webworker.client.Worker;
+
+/**
+ * Entry point of the shared worker that coordinates the task workers of all the pages of an origin (see
+ * {@link SharedWorkerJobProcessor}). The coordinator keeps a single pool of dedicated workers, so the total number of
+ * workers is capped whatever the number of opened pages, and caches the results of the requests that allow it.
+ * 
+ * Requests received from the pages are formatted as <code>requestId|cache|workerName|payload</code> where cache is 1 if
+ * the result can be cached. Replies use the {@link Task} completion and error flags with the request id.
+ * 
+ * @author luc boutier
+ */
+public class SharedWorkerPoolEntryPoint extends SharedWorkerEntryPoint {
+	/** Maximum number of dedicated workers shared by all the pages. */
+	public static final int MAX_WORKERS = 4;
+	/** Maximum number of results kept in the cache. */
+	public static final int MAX_CACHED_RESULTS = 1000;
+
+	private final List<PoolRequest> pendingRequests = new ArrayList<PoolRequest>();
+	private final Map<String, List<PoolWorker>> idleWorkers = new HashMap<String, List<PoolWorker>>();
+	private final Map<String, String> resultCache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Entry<String, String> eldest) {
+			return size() > MAX_CACHED_RESULTS;
+		}
+	};
+	private int workerCount = 0;
+	private int activeWorkers = 0;
+	private int nextTaskId = 0;
+
+	@Override
+	public void onWorkerLoad() {
+		setOnConnect(new MessageHandler() {
+			@Override
+			public void onMessage(MessageEvent event) {
+				final MessagePort port = event.getPorts().get(0);
+				port.setOnMessage(new MessageHandler() {
+					@Override
+					public void onMessage(MessageEvent requestEvent) {
+						onRequest(port, requestEvent.getDataAsString());
+					}
+				});
+				port.start();
+			}
+		});
+	}
+
+	private void onRequest(MessagePort port, String message) {
+		int requestIdEnd = message.indexOf(Task.TASK_ID_SEPARATOR);
+		int cacheEnd = message.indexOf(Task.TASK_ID_SEPARATOR, requestIdEnd + 1);
+		int workerNameEnd = message.indexOf(Task.TASK_ID_SEPARATOR, cacheEnd + 1);
+		String requestId = message.substring(0, requestIdEnd);
+		boolean cache = "1".equals(message.substring(requestIdEnd + 1, cacheEnd));
+		String workerName = message.substring(cacheEnd + 1, workerNameEnd);
+		String payload = message.substring(workerNameEnd + 1);
+
+		String cacheKey = cache ? workerName + Task.TASK_ID_SEPARATOR + payload : null;
+		if (cacheKey != null) {
+			String cachedResult = resultCache.get(cacheKey);
+			if (cachedResult != null) {
+				port.postMessage(Task.TASK_COMPLETED_FLAG + requestId + Task.TASK_ID_SEPARATOR + cachedResult);
+				return;
+			}
+		}
+		pendingRequests.add(new PoolRequest(port, requestId, workerName, payload, cacheKey));
+		dispatch();
+	}
+
+	/** Assign the pending requests to workers while the pool is not full. */
+	private void dispatch() {
+		while (!pendingRequests.isEmpty() && activeWorkers < MAX_WORKERS) {
+			PoolRequest request = pendingRequests.remove(0);
+			takeWorker(request.workerName).process(request);
+		}
+	}
+
+	private PoolWorker takeWorker(String workerName) {
+		List<PoolWorker> workers = idleWorkers.get(workerName);
+		if (workers != null && !workers.isEmpty()) {
+			return workers.remove(workers.size() - 1);
+		}
+		if (workerCount >= MAX_WORKERS) {
+			// less than MAX_WORKERS are active so there is an idle worker of another type.
+			for (List<PoolWorker> otherWorkers : idleWorkers.values()) {
+				if (!otherWorkers.isEmpty()) {
+					otherWorkers.remove(0).worker.terminate();
+					workerCount--;
+					break;
+				}
+			}
+		}
+		workerCount++;
+		return new PoolWorker(workerName);
+	}
+
+	private void onWorkerIdle(PoolWorker poolWorker) {
+		activeWorkers--;
+		List<PoolWorker> workers = idleWorkers.get(poolWorker.workerName);
+		if (workers == null) {
+			workers = new ArrayList<PoolWorker>();
+			idleWorkers.put(poolWorker.workerName, workers);
+		}
+		workers.add(poolWorker);
+		dispatch();
+	}
+
+	/** A request received from a page. */
+	private static class PoolRequest {
+		private final MessagePort port;
+		private final String requestId;
+		private final String workerName;
+		private final String payload;
+		private final String cacheKey;
+
+		public PoolRequest(MessagePort port, String requestId, String workerName, String payload, String cacheKey) {
+			this.port = port;
+			this.requestId = requestId;
+			this.workerName = workerName;
+			this.payload = payload;
+			this.cacheKey = cacheKey;
+		}
+	}
+
+	/** A dedicated worker of the pool, processing one request at a time. */
+	private class PoolWorker implements MessageHandler {
+		private final String workerName;
+		private final Worker worker;
+		private PoolRequest currentRequest;
+
+		public PoolWorker(String workerName) {
+			this.workerName = workerName;
+			this.worker = Worker.create(WebWorkerJobProcessor.getWorkerPath(workerName));
+			this.worker.setOnMessage(this);
+		}
+
+		public void process(PoolRequest request) {
+			activeWorkers++;
+			currentRequest = request;
+			worker.postMessage(nextTaskId++ + String.valueOf(Task.TASK_ID_SEPARATOR) + request.payload);
+		}
+
+		@Override
+		public void onMessage(MessageEvent event) {
+			String message = event.getDataAsString();
+			boolean success = message.startsWith(Task.TASK_COMPLETED_FLAG);
+			if (!success && !message.startsWith(Task.TASK_ERROR_FLAG)) {
+				// logs and unexpected messages are not forwarded to the pages.
+				return;
+			}
+			String flag = success ? Task.TASK_COMPLETED_FLAG : Task.TASK_ERROR_FLAG;
+			String data = message.substring(message.indexOf(Task.TASK_ID_SEPARATOR, flag.length()) + 1);
+			PoolRequest request = currentRequest;
+			currentRequest = null;
+			if (success && request.cacheKey != null) {
+				resultCache.put(request.cacheKey, data);
+			}
+			request.port.postMessage(flag + request.requestId + Task.TASK_ID_SEPARATOR + data);
+			onWorkerIdle(this);
+		}
+	}
+}
\ No newline at end of file
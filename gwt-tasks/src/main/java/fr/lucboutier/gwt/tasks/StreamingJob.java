@@ -0,0 +1,51 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.Iterator;
+
+/**
+ * A job which tasks are pulled from a source as the processor has room for them, instead of being materialized up
+ * front as in a {@link Job}. The processor keeps only the tasks in progress so a job over a large number of inputs is
+ * processed with bounded memory, and the results are delivered as soon as they are available.
+ * 
+ * @author luc boutier
+ */
+public class StreamingJob {
+	private final Iterator<? extends Task<?>> source;
+	private final IStreamingJobCallback callback;
+	private final String tenant;
+
+	/**
+	 * Create a new streaming job.
+	 * 
+	 * @param source The source of the tasks, tasks are created lazily by the iterator.
+	 * @param callback The callback to trigger for each result and once the job is completed.
+	 */
+	public StreamingJob(Iterator<? extends Task<?>> source, IStreamingJobCallback callback) {
+		this(source, callback, null);
+	}
+
+	/**
+	 * Create a new streaming job for a tenant.
+	 * 
+	 * @param source The source of the tasks, tasks are created lazily by the iterator.
+	 * @param callback The callback to trigger for each result and once the job is completed.
+	 * @param tenant The tenant that submits the job (see {@link Job#getTenant()}).
+	 */
+	public StreamingJob(Iterator<? extends Task<?>> source, IStreamingJobCallback callback, String tenant) {
+		this.source = source;
+		this.callback = callback;
+		this.tenant = tenant;
+	}
+
+	public Iterator<? extends Task<?>> getSource() {
+		return source;
+	}
+
+	public IStreamingJobCallback getCallback() {
+		return callback;
+	}
+
+	public String getTenant() {
+		return tenant;
+	}
+}
\ No newline at end of file
@@ -1,5 +1,6 @@
 package fr.lucboutier.gwt.tasks;
 
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.core.shared.GWT;
 import com.kfuntak.gwt.json.serialization.client.JsonSerializable;
 import com.kfuntak.gwt.json.serialization.client.Serializer;
@@ -17,8 +18,21 @@ public abstract class Task<T extends Object> extends DedicatedWorkerEntryPoint i
 	public static final String TASK_COMPLETED_FLAG = "TC::";
 	public static final String TASK_ERROR_FLAG = "TERR::";
 	public static final String TASK_LOG_FLAG = "TLOG::";
+	/**
+	 * Enables (TTR::1) or disables (TTR::0) the tracing in a worker, a traced worker sends the timings of each task
+	 * (TTR::id|deserialize start,execute start,serialize start,end) before it's result.
+	 */
+	public static final String TASK_TRACE_FLAG = "TTR::";
+	/** Separates the task id from the data in the messages exchanged with the worker (id|data). */
+	public static final char TASK_ID_SEPARATOR = '|';
 
 	private final Serializer serializer = GWT.create(Serializer.class);
+	// state of the worker that process the task, not serialized.
+	private transient WorkerState workerState;
+	// buffer reused for the result messages of pooled tasks.
+	private transient StringBuilder resultBuffer;
+	// true if the worker sends the timings of the tasks (one per worker global scope).
+	private static boolean tracing = false;
 
 	@Override
 	public void onWorkerLoad() {
@@ -31,26 +45,132 @@ public abstract class Task<T extends Object> extends DedicatedWorkerEntryPoint i
 	 * 
 	 * @param event The web worker message event.
 	 */
-	@SuppressWarnings("rawtypes")
 	public void onMessage(MessageEvent event) {
-		// parse parameters
-		String parameter = event.getDataAsString();
+		// parse task id and parameters
+		String message = event.getDataAsString();
+		if (Broadcast.onMessage(message)) {
+			return;
+		}
+		if (message.startsWith(TASK_TRACE_FLAG)) {
+			tracing = message.endsWith("1");
+			return;
+		}
+		postMessage(processMessage(message));
+	}
+
+	/**
+	 * Process a task message (id|parameters) as the worker does: read the parameters, execute the task and write the
+	 * result. Visible to the subclasses so that the processing of the messages can be measured outside of a worker.
+	 * 
+	 * @param message The message received by the worker.
+	 * @return The reply to send to the job processor, the result or the error of the task.
+	 */
+	@SuppressWarnings("rawtypes")
+	protected final String processMessage(String message) {
+		int separatorIndex = message.indexOf(TASK_ID_SEPARATOR);
+		if (this.workerState == null) {
+			// first task processed by this worker.
+			this.workerState = new WorkerState();
+			onWorkerInit(this.workerState);
+		}
+		if (this instanceof IPooledTask) {
+			return onPooledMessage((IPooledTask) this, message, separatorIndex + 1);
+		}
+		String idPrefix = message.substring(0, separatorIndex + 1);
+		String parameter = message.substring(separatorIndex + 1);
+		final double readStart = tracing ? Duration.currentTimeMillis() : 0;
 		final Task task;
 		if (this instanceof JsonSerializable) {
 			task = this.serializer.deSerialize(parameter, this.getClass());
 		} else {
 			task = this;
 		}
+		task.setWorkerState(this.workerState);
 		try {
+			final double executeStart = tracing ? Duration.currentTimeMillis() : 0;
 			task.execute();
-			if (this instanceof JsonSerializable) {
-				postMessage(TASK_COMPLETED_FLAG + this.serializer.serialize(task));
-			} else {
-				postMessage(TASK_COMPLETED_FLAG);
+			final double writeStart = tracing ? Duration.currentTimeMillis() : 0;
+			String result = this instanceof JsonSerializable ? this.serializer.serialize(task) : "";
+			if (tracing) {
+				postTrace(idPrefix, readStart, executeStart, writeStart);
+			}
+			return TASK_COMPLETED_FLAG + idPrefix + result;
+		} catch (Throwable t) {
+			return TASK_ERROR_FLAG + idPrefix + t.getMessage();
+		}
+	}
+
+	/**
+	 * Process a message with the pooled instance of the task, the parameters are read in place and the result message
+	 * is built in a reused buffer. The reply is still a new string for each message as postMessage takes a string: in
+	 * compiled JavaScript the buffer is built into an immutable string that toString returns without copying it, on
+	 * the JVM toString copies the buffer.
+	 */
+	private String onPooledMessage(IPooledTask pooledTask, String message, int parametersIndex) {
+		if (resultBuffer == null) {
+			resultBuffer = new StringBuilder();
+		}
+		resultBuffer.setLength(0);
+		try {
+			final double readStart = tracing ? Duration.currentTimeMillis() : 0;
+			pooledTask.readParameters(message, parametersIndex);
+			final double executeStart = tracing ? Duration.currentTimeMillis() : 0;
+			execute();
+			final double writeStart = tracing ? Duration.currentTimeMillis() : 0;
+			resultBuffer.append(TASK_COMPLETED_FLAG).append(message, 0, parametersIndex);
+			pooledTask.writeResult(resultBuffer);
+			if (tracing) {
+				postTrace(message.substring(0, parametersIndex), readStart, executeStart, writeStart);
 			}
 		} catch (Throwable t) {
-			postMessage(TASK_ERROR_FLAG + t.getMessage());
+			resultBuffer.setLength(0);
+			resultBuffer.append(TASK_ERROR_FLAG).append(message, 0, parametersIndex).append(t.getMessage());
 		}
+		return resultBuffer.toString();
+	}
+
+	/** Send the timings of a task to the job processor. */
+	private void postTrace(String idPrefix, double readStart, double executeStart, double writeStart) {
+		postMessage(TASK_TRACE_FLAG + idPrefix + readStart + "," + executeStart + "," + writeStart + ","
+				+ Duration.currentTimeMillis());
+	}
+
+	/**
+	 * Get the affinity key of the task. Tasks with the same key are processed, as far as possible, by the same web
+	 * worker or thread so that they reuse the same {@link WorkerState}.
+	 * 
+	 * @return The affinity key or <code>null</code> (default) if the task can be processed by any worker.
+	 */
+	public String getAffinityKey() {
+		return null;
+	}
+
+	/**
+	 * Called once per worker, before the first task of this class is processed, to initialize the state of the worker.
+	 * The parameters of the task must not be used as the state is shared by all the tasks that the worker processes.
+	 * 
+	 * @param state The state to initialize.
+	 */
+	protected void onWorkerInit(WorkerState state) {
+		// no state by default.
+	}
+
+	/**
+	 * Get the state of the worker that process the task.
+	 * 
+	 * @return The state of the worker, initialized by {@link #onWorkerInit(WorkerState)}.
+	 */
+	protected final WorkerState getWorkerState() {
+		if (workerState == null) {
+			// task executed outside of a job processor.
+			workerState = new WorkerState();
+			onWorkerInit(workerState);
+		}
+		return workerState;
+	}
+
+	final void setWorkerState(WorkerState workerState) {
+		this.workerState = workerState;
 	}
 
 	/**
@@ -1,12 +1,24 @@
 package fr.lucboutier.gwt.tasks;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,21 +27,47 @@ import java.util.logging.Logger;
  * 
  * @author luc boutier
  */
-public class ThreadJobProcessor implements IJobProcessor {
+public class ThreadJobProcessor implements IStreamingJobProcessor {
 	private static final Logger LOGGER = Logger.getLogger(ThreadJobProcessor.class.getName());
 
+	private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
 	private final boolean blockCallingThread;
-	private final BlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<Runnable>();
+	private final int minThreads;
+	private final int queueCapacity;
+	private final OverflowPolicy overflowPolicy;
+	private final BlockingQueue<Runnable> workQueue;
+	// queue that shares the threads between the tenants, null if tasks are processed in submission order.
+	private final FairShareQueue fairShareQueue;
 	private final ThreadPoolExecutor executor;
+	private final ThreadFactory threadFactory = new MeteredThreadFactory();
+	// single thread executors that process the tasks with an affinity key, created on demand (at most maxThreads).
+	private final ThreadPoolExecutor[] affinityLanes;
+	// maximum number of tasks of a streaming job that are materialized at the same time.
+	private final int streamingWindow;
+	private final ThreadLocal<WorkerStates> workerStates = new ThreadLocal<WorkerStates>() {
+		@Override
+		protected WorkerStates initialValue() {
+			return new WorkerStates();
+		}
+	};
+	// set while a pool thread submits the next tasks of a streaming job, the overflow policy must then neither block
+	// the pool thread nor run the task in it.
+	private final ThreadLocal<Boolean> deferOverflow = new ThreadLocal<Boolean>();
+	private final Queue<IReadyToAcceptCallback> readyCallbacks = new ConcurrentLinkedQueue<IReadyToAcceptCallback>();
+	private volatile JobProcessorMetrics metrics = JobProcessorMetrics.NO_OP;
+	private volatile IJobProgressListener progressListener;
+	private volatile JobTracer tracer;
+	private volatile double speculationThreshold = -1;
+	private volatile AdaptiveConcurrencyController concurrencyController;
+	private volatile IResultStoreFactory resultStoreFactory;
 
 	/**
 	 * Create a {@link ThreadJobProcessor} that doesn't block the calling thread on a processJob request and that uses
 	 * as many threads as CPUs.
 	 */
 	public ThreadJobProcessor() {
-		this.blockCallingThread = false;
-		executor = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime()
-				.availableProcessors(), 60, TimeUnit.SECONDS, workQueue);
+		this(false);
 	}
 
 	/**
@@ -40,9 +78,7 @@ public class ThreadJobProcessor implements IJobProcessor {
 	 *            not.
 	 */
 	public ThreadJobProcessor(boolean blockCallingThread) {
-		this.blockCallingThread = blockCallingThread;
-		executor = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime()
-				.availableProcessors(), 60, TimeUnit.SECONDS, workQueue);
+		this(blockCallingThread, Runtime.getRuntime().availableProcessors());
 	}
 
 	/**
@@ -54,8 +90,7 @@ public class ThreadJobProcessor implements IJobProcessor {
 	 * @param nbThreads The number of threads to be used for the {@link ThreadJobProcessor} (min = max).
 	 */
 	public ThreadJobProcessor(boolean blockCallingThread, int nbThreads) {
-		this.blockCallingThread = blockCallingThread;
-		executor = new ThreadPoolExecutor(nbThreads, nbThreads, 60, TimeUnit.SECONDS, workQueue);
+		this(blockCallingThread, nbThreads, nbThreads);
 	}
 
 	/**
@@ -68,65 +103,807 @@ public class ThreadJobProcessor implements IJobProcessor {
 	 * @param maxThreads The maximum number of threads to use in the thread pool.
 	 */
 	public ThreadJobProcessor(boolean blockCallingThread, int minThreads, int maxThreads) {
+		this(blockCallingThread, minThreads, maxThreads, Integer.MAX_VALUE, OverflowPolicy.BLOCK);
+	}
+
+	/**
+	 * Create a new {@link ThreadJobProcessor} with a bounded task queue.
+	 * 
+	 * @param blockCallingThread <code>true</code> if the calling thread should be blocked on
+	 *            {@link ThreadJobProcessor#processJob(Job)} calls until the job is completed, <code>false</code> if
+	 *            not.
+	 * @param minThreads The minimum number of threads to use in the thread pool.
+	 * @param maxThreads The maximum number of threads to use in the thread pool. Threads above minThreads are created
+	 *            only when the queue is full.
+	 * @param queueCapacity The maximum number of tasks waiting for a thread.
+	 * @param overflowPolicy The policy to apply when a task is submitted while the queue is full and all the threads
+	 *            are busy.
+	 */
+	public ThreadJobProcessor(boolean blockCallingThread, int minThreads, int maxThreads, int queueCapacity,
+			OverflowPolicy overflowPolicy) {
+		this(blockCallingThread, minThreads, maxThreads, new LinkedBlockingQueue<Runnable>(queueCapacity),
+				queueCapacity, overflowPolicy);
+	}
+
+	/**
+	 * Create a new {@link ThreadJobProcessor} that shares it's threads between the tenants of the jobs (see
+	 * {@link Job#getTenant()}) according to the quotas of the given queue. Tasks with an affinity key are processed by
+	 * their affinity lane and are not subject to the quotas.
+	 * 
+	 * @param blockCallingThread <code>true</code> if the calling thread should be blocked on
+	 *            {@link ThreadJobProcessor#processJob(Job)} calls until the job is completed, <code>false</code> if
+	 *            not.
+	 * @param nbThreads The number of threads to be used for the {@link ThreadJobProcessor}, all the threads are started
+	 *            up front so every task goes through the queue.
+	 * @param fairShareQueue The queue that holds the tasks of each tenant.
+	 * @param overflowPolicy The policy to apply when a task is submitted while the queue or the tenant queue is full.
+	 */
+	public ThreadJobProcessor(boolean blockCallingThread, int nbThreads, FairShareQueue fairShareQueue,
+			OverflowPolicy overflowPolicy) {
+		this(blockCallingThread, nbThreads, nbThreads, fairShareQueue, fairShareQueue.getCapacity(), overflowPolicy);
+		executor.prestartAllCoreThreads();
+	}
+
+	private ThreadJobProcessor(boolean blockCallingThread, int minThreads, int maxThreads,
+			BlockingQueue<Runnable> workQueue, int queueCapacity, OverflowPolicy overflowPolicy) {
 		this.blockCallingThread = blockCallingThread;
-		executor = new ThreadPoolExecutor(minThreads, maxThreads, 60, TimeUnit.SECONDS, workQueue);
+		this.minThreads = minThreads;
+		this.queueCapacity = queueCapacity;
+		this.overflowPolicy = overflowPolicy;
+		this.workQueue = workQueue;
+		this.fairShareQueue = workQueue instanceof FairShareQueue ? (FairShareQueue) workQueue : null;
+		executor = new ThreadPoolExecutor(minThreads, maxThreads, 60, TimeUnit.SECONDS, workQueue, threadFactory,
+				new OverflowHandler()) {
+			@Override
+			protected void afterExecute(Runnable runnable, Throwable t) {
+				if (fairShareQueue != null) {
+					// let the tenant run another task.
+					fairShareQueue.onTaskCompleted(runnable);
+				}
+			}
+		};
+		affinityLanes = new ThreadPoolExecutor[Math.max(1, maxThreads)];
+		streamingWindow = 2 * Math.max(1, maxThreads);
+	}
+
+	/**
+	 * Set the metrics that will receive the processor events.
+	 * 
+	 * @param metrics The metrics to use, {@link JobProcessorMetrics#NO_OP} to disable instrumentation.
+	 */
+	public void setMetrics(JobProcessorMetrics metrics) {
+		this.metrics = metrics == null ? JobProcessorMetrics.NO_OP : metrics;
+	}
+
+	/**
+	 * Set a listener to be notified of the progress of the jobs.
+	 * 
+	 * @param progressListener The listener to notify on each task completion, <code>null</code> to remove it.
+	 */
+	public void setProgressListener(IJobProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * Set a tracer to record the timeline of the jobs: queueing and completion of the jobs, and execution of the tasks
+	 * on each thread.
+	 * 
+	 * @param tracer The tracer to use, <code>null</code> to disable tracing.
+	 */
+	public void setTracer(JobTracer tracer) {
+		this.tracer = tracer;
+	}
+
+	/**
+	 * Set the factory of the stores that keep the results of the jobs instead of an on-heap array, for example to spill
+	 * large results to disk. Only the jobs which callback is an {@link IJobResultsCallback} use a store.
+	 * 
+	 * @param resultStoreFactory The factory to use, <code>null</code> to keep the results in an array.
+	 */
+	public void setResultStoreFactory(IResultStoreFactory resultStoreFactory) {
+		this.resultStoreFactory = resultStoreFactory;
+	}
+
+	/**
+	 * Share a read-only value with all the tasks processed by this processor.
+	 * 
+	 * @param value The value to share.
+	 * @return The broadcast value, which id must be set in the tasks that use it.
+	 */
+	public <V> Broadcast<V> broadcast(V value) {
+		return Broadcast.create(value);
+	}
+
+	/**
+	 * Release a broadcast value, tasks can't get it anymore.
+	 * 
+	 * @param broadcast The broadcast value to release.
+	 */
+	public void release(Broadcast<?> broadcast) {
+		Broadcast.release(broadcast.getId());
+	}
+
+	/**
+	 * Enable the speculative execution of the {@link IIdempotentTask}s: once the given ratio of the tasks of a job are
+	 * completed and the queue is empty, copies of the running idempotent tasks are launched on the idle threads and the
+	 * first result of each task is kept. Copies that are not started yet when the result is received are skipped.
+	 * 
+	 * @param completedRatio The ratio of completed tasks (0 to 1) after which copies are launched, negative to disable
+	 *            speculative execution (default).
+	 */
+	public void setSpeculativeExecution(double completedRatio) {
+		this.speculationThreshold = completedRatio;
+	}
+
+	/**
+	 * Enable the adaptive sizing of the thread pool: the number of threads is adjusted between the min and max threads
+	 * of the processor from the observed throughput, queue latency and blocked time.
+	 * 
+	 * @param sampleMillis The period between two adjustments.
+	 * @return The controller, which exposes the current limit.
+	 */
+	public synchronized AdaptiveConcurrencyController enableAdaptiveConcurrency(long sampleMillis) {
+		if (concurrencyController == null) {
+			AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(executor, workQueue,
+					minThreads, executor.getMaximumPoolSize(), sampleMillis);
+			controller.start();
+			concurrencyController = controller;
+		}
+		return concurrencyController;
+	}
+
+	/**
+	 * Get the current number of threads the processor can use concurrently.
+	 * 
+	 * @return The current limit of the adaptive controller or the core pool size if adaptive concurrency is disabled.
+	 */
+	public int getCurrentLimit() {
+		AdaptiveConcurrencyController controller = concurrencyController;
+		return controller == null ? executor.getCorePoolSize() : controller.getCurrentLimit();
 	}
 
 	/**
 	 * Shutdown the thread pool (no more tasks will be processed) pending jobs may not be completed.
 	 */
 	public void shutdown() {
+		AdaptiveConcurrencyController controller = concurrencyController;
+		if (controller != null) {
+			controller.stop();
+		}
 		executor.shutdown();
+		synchronized (affinityLanes) {
+			for (ThreadPoolExecutor lane : affinityLanes) {
+				if (lane != null) {
+					lane.shutdown();
+				}
+			}
+		}
 	}
 
+	/**
+	 * Check if the processor has room in it's queue for new tasks.
+	 * 
+	 * @return <code>true</code> if a task submitted now would be queued without applying the overflow policy.
+	 */
+	public boolean isReadyToAccept() {
+		return !executor.isShutdown() && workQueue.remainingCapacity() > 0;
+	}
+
+	/**
+	 * Register a callback to be triggered once the processor has room in it's queue. If the processor is already ready
+	 * the callback is triggered immediately in the calling thread, else it is triggered from a pool thread once a task
+	 * has completed.
+	 * 
+	 * @param callback The callback to trigger.
+	 */
+	public void whenReadyToAccept(IReadyToAcceptCallback callback) {
+		if (isReadyToAccept()) {
+			callback.onReadyToAccept();
+		} else {
+			readyCallbacks.add(callback);
+			// a task may have completed while we were registering the callback.
+			signalReadyToAccept();
+		}
+	}
+
+	/**
+	 * Process all the tasks of the job and call the onComplete method once done. If the first task of the job is
+	 * rejected by the overflow policy (or because the processor has been shutdown) the exception is thrown and the
+	 * callback is never triggered. If a later task is rejected, it and the next ones are reported as failed and the
+	 * job completes through the callback.
+	 * 
+	 * @param job The job to process.
+	 */
 	@Override
 	public void processJob(final Job job) {
 		final Task<?>[] tasks = job.getTasks();
-		final Object[] results = new Object[tasks.length];
-		final AtomicInteger completedCount = new AtomicInteger();
-		final AtomicInteger successCount = new AtomicInteger();
+		IResultStoreFactory storeFactory = resultStoreFactory;
+		IResultStore resultStore = null;
+		if (storeFactory != null && job.getCallback() instanceof IJobResultsCallback) {
+			resultStore = storeFactory.create(tasks.length);
+		}
+		if (tasks.length == 0) {
+			if (resultStore != null) {
+				((IJobResultsCallback) job.getCallback()).onCompleted(resultStore);
+			} else {
+				job.getCallback().onCompleted(new Object[0]);
+			}
+			return;
+		}
+		final ThreadJob threadJob = new ThreadJob(job, blockCallingThread, speculationThreshold >= 0, tracer,
+				resultStore);
 
-		Future<?>[] futures = new Future<?>[tasks.length];
 		for (int i = 0; i < tasks.length; i++) {
-			final int taskIndex = i;
-			final Task<?> task = tasks[taskIndex];
-			futures[i] = executor.submit(new Runnable() {
-				@Override
-				public void run() {
-					try {
-						results[taskIndex] = task.execute();
-						onTaskCompleted(job, results, tasks.length, completedCount, successCount, true);
-					} catch (Throwable t) {
-						LOGGER.log(Level.SEVERE, "Error while processing task", t);
-						onTaskCompleted(job, results, tasks.length, completedCount, successCount, false);
+			try {
+				submit(tasks[i], new TaskRunnable(threadJob, i));
+			} catch (RejectedExecutionException e) {
+				if (i == 0) {
+					// nothing has been submitted, the callback is never triggered.
+					if (resultStore != null) {
+						resultStore.release();
 					}
+					throw e;
+				}
+				// the job completes through the callback once the submitted tasks are completed.
+				LOGGER.log(Level.SEVERE, "Tasks " + (i + 1) + " to " + tasks.length + " of the job have been rejected",
+						e);
+				for (int j = i; j < tasks.length; j++) {
+					onTaskCompleted(threadJob, false);
 				}
-			});
+				break;
+			}
+		}
+		if (metrics != JobProcessorMetrics.NO_OP) {
+			metrics.onQueueDepth(workQueue.size());
 		}
 
 		if (blockCallingThread) {
-			for (Future<?> future : futures) {
-				try {
-					future.get();
-				} catch (InterruptedException e) {
-					LOGGER.log(Level.SEVERE, "Unable to process job correctly", e);
-				} catch (ExecutionException e) {
-					LOGGER.log(Level.SEVERE, "Unable to process job correctly", e);
+			try {
+				threadJob.latch.await();
+			} catch (InterruptedException e) {
+				LOGGER.log(Level.SEVERE, "Unable to process job correctly", e);
+			}
+		}
+	}
+
+	@Override
+	public void processStreamingJob(final StreamingJob job) {
+		final StreamingThreadJob streamingJob = new StreamingThreadJob(job, blockCallingThread);
+		feed(streamingJob, false);
+		if (blockCallingThread) {
+			try {
+				streamingJob.latch.await();
+			} catch (InterruptedException e) {
+				LOGGER.log(Level.SEVERE, "Unable to process job correctly", e);
+			}
+		}
+	}
+
+	/**
+	 * Pull tasks from the source of a streaming job while it has room in it's window. Tasks are submitted outside of
+	 * the job lock as the overflow policy may block or run the task in the calling thread. When the tasks are submitted
+	 * by a pool thread the overflow policy doesn't apply: if the queue is full the tasks are deferred and submitted
+	 * again once the queue has room, so the pool threads never wait for each other nor recurse into the tasks.
+	 * 
+	 * @param poolThread <code>true</code> if called by a thread of the processor (or in a task).
+	 */
+	private void feed(final StreamingThreadJob streamingJob, boolean poolThread) {
+		List<StreamingTaskRunnable> runnables = new ArrayList<StreamingTaskRunnable>();
+		boolean completed = false;
+		synchronized (streamingJob) {
+			if (streamingJob.waitingForRoom) {
+				return; // the deferred tasks are submitted once the queue has room.
+			}
+			runnables.addAll(streamingJob.deferred);
+			streamingJob.deferred.clear();
+			Iterator<? extends Task<?>> source = streamingJob.job.getSource();
+			while (!streamingJob.aborted && streamingJob.inProgress < streamingWindow && source.hasNext()) {
+				runnables.add(new StreamingTaskRunnable(streamingJob, source.next(), streamingJob.nextIndex++));
+				streamingJob.inProgress++;
+			}
+			boolean exhausted = streamingJob.aborted || !source.hasNext();
+			if (exhausted && streamingJob.inProgress == 0 && !streamingJob.completed) {
+				streamingJob.completed = true;
+				completed = true;
+			}
+		}
+		for (int i = 0; i < runnables.size(); i++) {
+			StreamingTaskRunnable runnable = runnables.get(i);
+			if (poolThread) {
+				deferOverflow.set(Boolean.TRUE);
+			}
+			try {
+				submit(runnable.task, runnable);
+			} catch (DeferredSubmitException e) {
+				defer(streamingJob, runnables.subList(i, runnables.size()));
+				break;
+			} catch (RejectedExecutionException e) {
+				// stop pulling tasks from the source, the job completes once the submitted tasks are completed.
+				LOGGER.log(Level.SEVERE, "Streaming job aborted as a task has been rejected", e);
+				synchronized (streamingJob) {
+					streamingJob.aborted = true;
 				}
+				onStreamingTaskCompleted(streamingJob, runnable.taskIndex, null, false);
+			} finally {
+				deferOverflow.remove();
+			}
+		}
+		if (completed) {
+			streamingJob.job.getCallback().onCompleted(streamingJob.completedCount, streamingJob.successCount);
+			if (streamingJob.latch != null) {
+				streamingJob.latch.countDown();
 			}
 		}
 	}
 
-	private void onTaskCompleted(final Job job, final Object[] results, final int totalCount,
-			final AtomicInteger completedCount, final AtomicInteger successCount, boolean success) {
-		int currentCompleted = completedCount.incrementAndGet();
+	/** Keep tasks that didn't fit in the queue, they are submitted again once the queue has room. */
+	private void defer(final StreamingThreadJob streamingJob, List<StreamingTaskRunnable> runnables) {
+		synchronized (streamingJob) {
+			streamingJob.deferred.addAll(runnables);
+			streamingJob.waitingForRoom = true;
+		}
+		readyCallbacks.add(new IReadyToAcceptCallback() {
+			@Override
+			public void onReadyToAccept() {
+				synchronized (streamingJob) {
+					streamingJob.waitingForRoom = false;
+				}
+				feed(streamingJob, true);
+			}
+		});
+		if (workQueue.isEmpty()) {
+			// the queue has been drained meanwhile, let a pool thread trigger the callback.
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						signalReadyToAccept();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				LOGGER.log(Level.SEVERE, "Unable to submit the deferred tasks of a streaming job", e);
+			}
+		}
+	}
+
+	private void onStreamingTaskCompleted(StreamingThreadJob streamingJob, int taskIndex, Object result,
+			boolean success) {
+		streamingJob.job.getCallback().onTaskCompleted(taskIndex, result, success);
+		synchronized (streamingJob) {
+			streamingJob.inProgress--;
+			streamingJob.completedCount++;
+			if (success) {
+				streamingJob.successCount++;
+			}
+		}
+		feed(streamingJob, true);
+	}
+
+	/** Get the current time in ms for the tracer. */
+	private static double currentTimeMillis() {
+		return System.nanoTime() / 1000000d;
+	}
+
+	/** Record the execution of a task on the track of the current thread. */
+	private static void traceTask(JobTracer tracer, Task<?> task, double startMillis) {
+		tracer.addSpan(Thread.currentThread().getName(), JobTracer.getTaskName(task), JobTracer.CATEGORY_TASK,
+				startMillis, currentTimeMillis());
+	}
+
+	/** Get the cpu time of the current thread in ns, -1 if not supported. */
+	private static long currentThreadCpuTime() {
+		return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1;
+	}
+
+	/** Submit a task to the shared pool or to it's affinity lane. */
+	private void submit(Task<?> task, Runnable runnable) {
+		String affinityKey = task.getAffinityKey();
+		if (affinityKey == null) {
+			executor.execute(runnable);
+		} else {
+			getAffinityLane(affinityKey).execute(runnable);
+		}
+	}
+
+	/**
+	 * Get the single thread executor that process the tasks with the given affinity key. Each lane has it's own queue,
+	 * bounded by the queue capacity of the processor, and applies the overflow policy. Lanes are not subject to the
+	 * fair share quotas nor to the adaptive concurrency limit: they add up to maxThreads threads to the shared pool.
+	 */
+	private ThreadPoolExecutor getAffinityLane(String affinityKey) {
+		int index = (affinityKey.hashCode() & Integer.MAX_VALUE) % affinityLanes.length;
+		synchronized (affinityLanes) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("The job processor has been shutdown.");
+			}
+			if (affinityLanes[index] == null) {
+				affinityLanes[index] = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+						new LinkedBlockingQueue<Runnable>(queueCapacity), threadFactory, new OverflowHandler());
+				affinityLanes[index].allowCoreThreadTimeOut(true);
+			}
+			return affinityLanes[index];
+		}
+	}
+
+	private void onTaskCompleted(final ThreadJob threadJob, boolean success) {
 		if (success) {
-			successCount.incrementAndGet();
+			threadJob.successCount.incrementAndGet();
+		}
+		int currentCompleted = threadJob.completedCount.incrementAndGet();
+		int totalCount = threadJob.size;
+		IJobProgressListener listener = progressListener;
+		if (listener != null) {
+			listener.onProgress(threadJob.job, currentCompleted, threadJob.successCount.get(), totalCount);
+		}
+		if (LOGGER.isLoggable(Level.FINER)) {
+			LOGGER.finer("Completed " + currentCompleted + " tasks on " + totalCount + " success "
+					+ threadJob.successCount.get());
 		}
-		int successCompleted = successCount.get();
-		LOGGER.info("Completed " + currentCompleted + " tasks on " + totalCount + " success " + successCompleted);
 		if (currentCompleted == totalCount) {
-			job.getCallback().onCompleted(results);
+			if (threadJob.tracer != null) {
+				double end = currentTimeMillis();
+				threadJob.tracer.addSpan(threadJob.traceTrack, "job", JobTracer.CATEGORY_JOB, threadJob.createdMillis,
+						end);
+				long startedBits = threadJob.startedMillis.get();
+				threadJob.tracer.addSpan(threadJob.traceTrack, "queued", JobTracer.CATEGORY_JOB,
+						threadJob.createdMillis, startedBits < 0 ? end : Double.longBitsToDouble(startedBits));
+			}
+			if (threadJob.resultStore != null) {
+				((IJobResultsCallback) threadJob.job.getCallback()).onCompleted(threadJob.resultStore);
+			} else {
+				threadJob.job.getCallback().onCompleted(threadJob.results);
+			}
+			if (threadJob.latch != null) {
+				threadJob.latch.countDown();
+			}
+		} else if (threadJob.taskStates != null) {
+			speculate(threadJob, currentCompleted);
+		}
+	}
+
+	/** Launch copies of the running idempotent tasks of a job on the idle threads. */
+	private void speculate(ThreadJob threadJob, int completedTasks) {
+		if (completedTasks < speculationThreshold * threadJob.size || !workQueue.isEmpty()) {
+			return;
+		}
+		final Task<?>[] tasks = threadJob.job.getTasks();
+		for (Integer taskIndex : threadJob.runningTasks.keySet()) {
+			if (executor.getActiveCount() >= executor.getMaximumPoolSize()) {
+				return;
+			}
+			if (tasks[taskIndex] instanceof IIdempotentTask
+					&& threadJob.speculatedTasks.putIfAbsent(taskIndex, Boolean.TRUE) == null) {
+				try {
+					// the copy runs on it's own instance and worker state, concurrently with the task.
+					Task<?> copy = ((IIdempotentTask) tasks[taskIndex]).copy();
+					executor.execute(new TaskRunnable(threadJob, taskIndex, copy, true));
+				} catch (RejectedExecutionException e) {
+					return;
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Unable to copy task " + (taskIndex + 1) + " for speculative execution",
+							e);
+				}
+			}
+		}
+	}
+
+	private void signalReadyToAccept() {
+		// only the callbacks registered so far are triggered as a callback may register itself again.
+		for (int i = readyCallbacks.size(); i > 0 && isReadyToAccept(); i--) {
+			IReadyToAcceptCallback callback = readyCallbacks.poll();
+			if (callback != null) {
+				callback.onReadyToAccept();
+			}
 		}
 	}
+
+	private static final int TASK_QUEUED = 0;
+	private static final int TASK_RUNNING = 1;
+	private static final int TASK_DONE = 2;
+
+	/** Processing state of a job. */
+	private static class ThreadJob {
+		private final Job job;
+		private final int size;
+		// results of the tasks, either in the array or in the store if the job uses one.
+		private final Object[] results;
+		private final IResultStore resultStore;
+		private final AtomicInteger completedCount = new AtomicInteger();
+		private final AtomicInteger successCount = new AtomicInteger();
+		private final CountDownLatch latch;
+		// state of each task for speculative execution (queued, running or done), null if disabled.
+		private final AtomicIntegerArray taskStates;
+		private final ConcurrentHashMap<Integer, Boolean> runningTasks;
+		private final ConcurrentHashMap<Integer, Boolean> speculatedTasks;
+		// tracer of the job, null if not traced.
+		private final JobTracer tracer;
+		private final String traceTrack;
+		private final double createdMillis;
+		// time the first task of the job has started, as double bits, -1 until then.
+		private final AtomicLong startedMillis = new AtomicLong(-1);
+
+		public ThreadJob(final Job job, boolean blocking, boolean speculative, JobTracer tracer,
+				IResultStore resultStore) {
+			this.job = job;
+			this.tracer = tracer;
+			this.traceTrack = tracer == null ? null : tracer.newJobTrack();
+			this.createdMillis = tracer == null ? 0 : currentTimeMillis();
+			this.size = job.getTasks().length;
+			this.resultStore = resultStore;
+			this.results = resultStore == null ? new Object[size] : null;
+			this.latch = blocking ? new CountDownLatch(1) : null;
+			this.taskStates = speculative ? new AtomicIntegerArray(size) : null;
+			this.runningTasks = speculative ? new ConcurrentHashMap<Integer, Boolean>() : null;
+			this.speculatedTasks = speculative ? new ConcurrentHashMap<Integer, Boolean>() : null;
+		}
+
+		/**
+		 * Mark a task as running.
+		 * 
+		 * @return <code>false</code> if the task must not be executed as it is already completed.
+		 */
+		public boolean start(int taskIndex, boolean speculative) {
+			if (taskStates == null) {
+				return true;
+			}
+			boolean started = speculative ? taskStates.get(taskIndex) == TASK_RUNNING : taskStates.compareAndSet(
+					taskIndex, TASK_QUEUED, TASK_RUNNING);
+			if (started) {
+				runningTasks.put(taskIndex, Boolean.TRUE);
+			}
+			return started;
+		}
+
+		/**
+		 * Mark a task as done.
+		 * 
+		 * @return <code>false</code> if another copy of the task is already done.
+		 */
+		public boolean complete(int taskIndex) {
+			if (taskStates == null) {
+				return true;
+			}
+			runningTasks.remove(taskIndex);
+			return taskStates.getAndSet(taskIndex, TASK_DONE) != TASK_DONE;
+		}
+	}
+
+	/** Processing state of a streaming job, guarded by the job lock. */
+	private static class StreamingThreadJob {
+		private final StreamingJob job;
+		private final CountDownLatch latch;
+		private int nextIndex = 0;
+		private int inProgress = 0;
+		private int completedCount = 0;
+		private int successCount = 0;
+		private boolean aborted = false;
+		private boolean completed = false;
+		// tasks that didn't fit in the queue when submitted by a pool thread.
+		private final List<StreamingTaskRunnable> deferred = new ArrayList<StreamingTaskRunnable>();
+		private boolean waitingForRoom = false;
+
+		public StreamingThreadJob(final StreamingJob job, boolean blocking) {
+			this.job = job;
+			this.latch = blocking ? new CountDownLatch(1) : null;
+		}
+	}
+
+	/** Runnable that process a single task of a streaming job. */
+	private class StreamingTaskRunnable implements FairShareQueue.ITenantRunnable {
+		private final StreamingThreadJob streamingJob;
+		private final Task<?> task;
+		private final int taskIndex;
+
+		public StreamingTaskRunnable(final StreamingThreadJob streamingJob, final Task<?> task, final int taskIndex) {
+			this.streamingJob = streamingJob;
+			this.task = task;
+			this.taskIndex = taskIndex;
+		}
+
+		@Override
+		public String getTenant() {
+			return streamingJob.job.getTenant();
+		}
+
+		@Override
+		public void run() {
+			final JobProcessorMetrics currentMetrics = metrics;
+			final boolean metered = currentMetrics != JobProcessorMetrics.NO_OP;
+			final long start = metered ? System.nanoTime() : 0;
+			final JobTracer currentTracer = tracer;
+			final double traceStart = currentTracer != null ? currentTimeMillis() : 0;
+			Object result = null;
+			boolean success = false;
+			try {
+				workerStates.get().bind(task);
+				result = task.execute();
+				success = true;
+			} catch (Throwable t) {
+				LOGGER.log(Level.SEVERE, "Error while processing task", t);
+			}
+			if (currentTracer != null) {
+				traceTask(currentTracer, task, traceStart);
+			}
+			if (metered) {
+				currentMetrics.onTaskCompleted(task.getClass().getName(), (System.nanoTime() - start) / 1000000d,
+						success);
+			}
+			onStreamingTaskCompleted(streamingJob, taskIndex, result, success);
+			signalReadyToAccept();
+		}
+
+		/** Called when the task is removed from the queue without being processed. */
+		public void discard() {
+			LOGGER.warning("Task " + (taskIndex + 1) + " of streaming job dropped as the queue is full");
+			onStreamingTaskCompleted(streamingJob, taskIndex, null, false);
+		}
+	}
+
+	/** Runnable that process a single task of a job. */
+	private class TaskRunnable implements FairShareQueue.ITenantRunnable {
+		private final ThreadJob threadJob;
+		private final int taskIndex;
+		// the task of the job or, for a speculative copy, a copy of it.
+		private final Task<?> task;
+		private final boolean speculative;
+		private final AdaptiveConcurrencyController controller = concurrencyController;
+		private final long submitNanos = controller == null ? 0 : System.nanoTime();
+
+		public TaskRunnable(final ThreadJob threadJob, final int taskIndex) {
+			this(threadJob, taskIndex, threadJob.job.getTasks()[taskIndex], false);
+		}
+
+		public TaskRunnable(final ThreadJob threadJob, final int taskIndex, final Task<?> task,
+				final boolean speculative) {
+			this.threadJob = threadJob;
+			this.taskIndex = taskIndex;
+			this.task = task;
+			this.speculative = speculative;
+		}
+
+		@Override
+		public String getTenant() {
+			return threadJob.job.getTenant();
+		}
+
+		@Override
+		public void run() {
+			if (!threadJob.start(taskIndex, speculative)) {
+				return;
+			}
+			final JobProcessorMetrics currentMetrics = metrics;
+			final boolean metered = currentMetrics != JobProcessorMetrics.NO_OP;
+			final long start = metered || controller != null ? System.nanoTime() : 0;
+			final long startCpu = controller != null ? currentThreadCpuTime() : -1;
+			final double traceStart = threadJob.tracer != null ? currentTimeMillis() : 0;
+			if (threadJob.tracer != null) {
+				threadJob.startedMillis.compareAndSet(-1, Double.doubleToLongBits(traceStart));
+			}
+			Object result = null;
+			boolean success;
+			try {
+				workerStates.get().bind(task);
+				result = task.execute();
+				success = true;
+			} catch (Throwable t) {
+				LOGGER.log(Level.SEVERE, "Error while processing task", t);
+				success = false;
+			}
+			if (threadJob.tracer != null) {
+				traceTask(threadJob.tracer, task, traceStart);
+			}
+			if (controller != null) {
+				long end = System.nanoTime();
+				long cpu = startCpu < 0 ? -1 : currentThreadCpuTime() - startCpu;
+				controller.onTaskCompleted(start - submitNanos, end - start, cpu);
+			}
+			if (!threadJob.complete(taskIndex)) {
+				return; // another copy of the task completed first.
+			}
+			if (threadJob.resultStore != null) {
+				threadJob.resultStore.set(taskIndex, result);
+			} else {
+				threadJob.results[taskIndex] = result;
+			}
+			if (metered) {
+				currentMetrics.onTaskCompleted(task.getClass().getName(), (System.nanoTime() - start) / 1000000d,
+						success);
+				int active = executor.getActiveCount();
+				currentMetrics.onWorkers(active, executor.getPoolSize() - active);
+				currentMetrics.onQueueDepth(workQueue.size());
+			}
+			onTaskCompleted(threadJob, success);
+			signalReadyToAccept();
+		}
+
+		/** Called when the task is removed from the queue without being processed. */
+		public void discard() {
+			if (speculative) {
+				return; // the task itself is still running.
+			}
+			if (!threadJob.complete(taskIndex)) {
+				return;
+			}
+			LOGGER.warning("Task " + (taskIndex + 1) + "/" + threadJob.size
+					+ " dropped as the queue is full");
+			onTaskCompleted(threadJob, false);
+		}
+	}
+
+	/** Thread factory that reports threads creation and termination to the metrics. */
+	private class MeteredThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final String name = "gwt-tasks-" + threadNumber.incrementAndGet();
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					metrics.onWorkerSpawned(name);
+					try {
+						runnable.run();
+					} finally {
+						metrics.onWorkerTerminated(name);
+					}
+				}
+			}, name);
+			thread.setDaemon(false);
+			return thread;
+		}
+	}
+
+	/** Applies the overflow policy when the queue of the shared pool or of a lane is full and it's threads are busy. */
+	private class OverflowHandler implements RejectedExecutionHandler {
+		@Override
+		public void rejectedExecution(Runnable runnable, ThreadPoolExecutor threadPoolExecutor) {
+			if (threadPoolExecutor.isShutdown()) {
+				throw new RejectedExecutionException("The job processor has been shutdown.");
+			}
+			if (deferOverflow.get() != null) {
+				throw new DeferredSubmitException();
+			}
+			switch (overflowPolicy) {
+			case BLOCK:
+				try {
+					threadPoolExecutor.getQueue().put(runnable);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RejectedExecutionException("Interrupted while waiting for room in the queue.", e);
+				}
+				break;
+			case CALLER_RUNS:
+				runnable.run();
+				break;
+			case DROP_OLDEST:
+				// with a fair share queue, drop the oldest task of the same tenant only.
+				Runnable oldest = threadPoolExecutor == executor && fairShareQueue != null ? fairShareQueue
+						.pollOldest(runnable) : threadPoolExecutor.getQueue().poll();
+				if (oldest == null) {
+					// the queue has been drained meanwhile or the tenant has no task to drop, executing again could
+					// loop if nothing can be dropped.
+					if (!threadPoolExecutor.getQueue().offer(runnable)) {
+						throw new RejectedExecutionException("The job processor queue is full and has no task to "
+								+ "drop.");
+					}
+					break;
+				}
+				if (oldest instanceof TaskRunnable) {
+					((TaskRunnable) oldest).discard();
+				} else if (oldest instanceof StreamingTaskRunnable) {
+					((StreamingTaskRunnable) oldest).discard();
+				}
+				threadPoolExecutor.execute(runnable);
+				break;
+			default:
+				throw new RejectedExecutionException("The job processor queue is full (capacity <" + queueCapacity
+						+ ">).");
+			}
+		}
+	}
+
+	/** Thrown when a task submitted by a pool thread doesn't fit in the queue. */
+	private static class DeferredSubmitException extends RejectedExecutionException {
+		private static final long serialVersionUID = 1L;
+	}
 }
\ No newline at end of file
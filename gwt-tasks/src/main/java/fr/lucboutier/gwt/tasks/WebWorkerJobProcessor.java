@@ -1,14 +1,19 @@
 package fr.lucboutier.gwt.tasks;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 import com.google.gwt.core.shared.GWT;
 import com.kfuntak.gwt.json.serialization.client.JsonSerializable;
 import com.kfuntak.gwt.json.serialization.client.Serializer;
@@ -22,18 +27,187 @@ import fr.lucboutier.gwt.webworker.client.Worker;
  * 
  * @author luc boutier
  */
-public class WebWorkerJobProcessor implements IJobProcessor {
+public class WebWorkerJobProcessor implements IStreamingJobProcessor {
 	private static final Logger LOGGER = Logger.getLogger(WebWorkerJobProcessor.class.getName());
 
 	private final Serializer serializer = GWT.create(Serializer.class);
 
-	private static final int MAX_WORKERS = 4;
+	private static final int DEFAULT_MAX_WORKERS = 4;
+	// urls of the worker scripts registered by the application, by module name.
+	private static final Map<String, String> WORKER_URLS = new HashMap<String, String>();
+	// urls of the worker scripts registered by the application, by qualified task class name.
+	private static final Map<String, String> TASK_WORKER_URLS = new HashMap<String, String>();
+
+	private final int maxWorkers;
+	private final int maxPendingJobs;
+	private final OverflowPolicy overflowPolicy;
+	private int prefetchSize = 1;
+	private double speculationThreshold = -1;
+	private double frameBudgetMillis = 0;
+	private boolean deliveryScheduled = false;
+	private int nextTaskId = 0;
 	private int currentActiveWorkers = 0;
-	private int currentHiddleWorkers = 0;
+	private List<TaskWorker> activeWorkers = new ArrayList<TaskWorker>();
 	private List<WebWorkerJob> pendingJobs = new ArrayList<WebWorkerJob>();
+	private List<IReadyToAcceptCallback> readyCallbacks = new ArrayList<IReadyToAcceptCallback>();
+	private JobProcessorMetrics metrics = JobProcessorMetrics.NO_OP;
+	private JobTracer tracer;
+	private int nextWorkerTraceId = 0;
+
+	// idle workers by task type, in least recently used order.
+	private final IdleWorkerPool<TaskWorker> idleWorkers = new IdleWorkerPool<TaskWorker>();
+	private int idleTimeoutMillis = 0;
+	private boolean reaperScheduled = false;
+	// messages of the broadcast values, sent to every new worker.
+	private Map<Integer, String> broadcastMessages = new HashMap<Integer, String>();
+	// workers that processed the last task of each task type and affinity key (see getAffinityWorkerKey).
+	private Map<String, TaskWorker> affinityWorkers = new HashMap<String, TaskWorker>();
+	// results received from the workers and not delivered yet when the delivery is frame aligned.
+	private LinkedList<ReceivedResult> receivedResults = new LinkedList<ReceivedResult>();
+	// buffer reused to write the messages of the pooled tasks.
+	private final StringBuilder messageBuffer = new StringBuilder();
+
+	/**
+	 * Create a {@link WebWorkerJobProcessor} that uses up to 4 web workers and doesn't limit the number of pending
+	 * jobs.
+	 */
+	public WebWorkerJobProcessor() {
+		this(DEFAULT_MAX_WORKERS, Integer.MAX_VALUE, OverflowPolicy.REJECT);
+	}
+
+	/**
+	 * Create a new {@link WebWorkerJobProcessor}.
+	 * 
+	 * @param maxWorkers The maximum number of web workers to use.
+	 * @param maxPendingJobs The maximum number of jobs that can be pending (including the one in progress).
+	 * @param overflowPolicy The policy to apply when a job is submitted while there is already maxPendingJobs pending
+	 *            jobs. {@link OverflowPolicy#BLOCK} is handled as {@link OverflowPolicy#REJECT} as the UI thread can't
+	 *            be blocked.
+	 */
+	public WebWorkerJobProcessor(int maxWorkers, int maxPendingJobs, OverflowPolicy overflowPolicy) {
+		this.maxWorkers = maxWorkers;
+		this.maxPendingJobs = maxPendingJobs;
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Set the metrics that will receive the processor events.
+	 * 
+	 * @param metrics The metrics to use, {@link JobProcessorMetrics#NO_OP} to disable instrumentation.
+	 */
+	public void setMetrics(JobProcessorMetrics metrics) {
+		this.metrics = metrics == null ? JobProcessorMetrics.NO_OP : metrics;
+	}
+
+	/**
+	 * Set the number of tasks that can be sent to a worker before it's previous tasks are completed. With a prefetch
+	 * size greater than 1 a worker starts it's next task as soon as it has sent the result of the previous one, without
+	 * waiting for the main thread to process the result and send a new task.
+	 * 
+	 * @param prefetchSize The maximum number of tasks in flight per worker (1 to disable prefetching).
+	 */
+	public void setPrefetchSize(int prefetchSize) {
+		this.prefetchSize = Math.max(1, prefetchSize);
+	}
+
+	/**
+	 * Set a tracer to record the timeline of the jobs: queueing and completion of the jobs, messages serialization in
+	 * the main thread, and bootstrap, deserialization, execution and serialization in each worker, which sends the
+	 * timings of each task before it's result.
+	 * 
+	 * @param tracer The tracer to use, <code>null</code> to disable tracing.
+	 */
+	public void setTracer(JobTracer tracer) {
+		this.tracer = tracer;
+		postToLiveWorkers(Task.TASK_TRACE_FLAG + (tracer == null ? "0" : "1"));
+	}
+
+	/**
+	 * Deliver the results in batches aligned on the animation frames instead of on each worker message. Workers are
+	 * released and receive their next task as soon as their result is received, but the results deserialization and
+	 * the job callbacks are deferred to the next animation frame and each frame only spends the given budget on them,
+	 * so a burst of results doesn't delay the rendering. As animation frames are paused by the browser while the page
+	 * is hidden, so is the delivery of the results.
+	 * 
+	 * @param frameBudgetMillis The maximum time spent delivering results in each frame (at least one result is
+	 *            delivered per frame), 0 to deliver the results as soon as they are received (default).
+	 */
+	public void setFrameAlignedDelivery(double frameBudgetMillis) {
+		this.frameBudgetMillis = Math.max(0, frameBudgetMillis);
+	}
 
-	// map of hidle workers
-	private Map<String, List<TaskWorker>> hidleWorkers = new HashMap<String, List<TaskWorker>>();
+	/**
+	 * Share a read-only value with all the tasks processed by this processor. The value is serialized and sent once to
+	 * each live worker and to the workers created later.
+	 * 
+	 * @param value The value to share.
+	 * @return The broadcast value, which id must be set in the tasks that use it.
+	 */
+	public <V extends JsonSerializable> Broadcast<V> broadcast(V value) {
+		// the value is also registered in the main thread for the tasks executed by the caller.
+		Broadcast<V> broadcast = Broadcast.create(value);
+		String message = Broadcast.BROADCAST_FLAG + broadcast.getId() + Task.TASK_ID_SEPARATOR
+				+ serializer.serialize(value);
+		broadcastMessages.put(broadcast.getId(), message);
+		postToLiveWorkers(message);
+		return broadcast;
+	}
+
+	/**
+	 * Release a broadcast value in the main thread and in all the workers.
+	 * 
+	 * @param broadcast The broadcast value to release.
+	 */
+	public void release(Broadcast<?> broadcast) {
+		Broadcast.release(broadcast.getId());
+		if (broadcastMessages.remove(broadcast.getId()) != null) {
+			postToLiveWorkers(Broadcast.RELEASE_FLAG + broadcast.getId());
+		}
+	}
+
+	private void postToLiveWorkers(String message) {
+		for (TaskWorker taskWorker : this.activeWorkers) {
+			taskWorker.worker.postMessage(message);
+		}
+		for (TaskWorker taskWorker : this.idleWorkers.getWorkers()) {
+			taskWorker.worker.postMessage(message);
+		}
+	}
+
+	/**
+	 * Enable the speculative execution of the {@link IIdempotentTask}s: once all the tasks of a job are launched and
+	 * the given ratio of them are completed, copies of the outstanding idempotent tasks are launched on idle workers
+	 * and the first result of each task is kept. Workers that only run a losing copy are terminated. Streaming jobs are
+	 * not speculated.
+	 * 
+	 * @param completedRatio The ratio of completed tasks (0 to 1) after which copies are launched, negative to disable
+	 *            speculative execution (default).
+	 */
+	public void setSpeculativeExecution(double completedRatio) {
+		this.speculationThreshold = completedRatio;
+	}
+
+	/**
+	 * Terminate all the idle web workers. Workers that are processing a task are not affected.
+	 */
+	public void terminateIdleWorkers() {
+		for (TaskWorker taskWorker : this.idleWorkers.clear()) {
+			terminateWorker(taskWorker);
+		}
+	}
+
+	/**
+	 * Set the time after which an idle web worker is terminated. Idle workers are checked periodically so a worker may
+	 * stay idle up to twice this time. Without timeout, idle workers are only terminated when a worker of another task
+	 * type is needed, starting with the least recently used one.
+	 * 
+	 * @param idleTimeoutMillis The idle time in ms after which a worker is terminated, 0 to keep the idle workers
+	 *            (default).
+	 */
+	public void setIdleTimeout(int idleTimeoutMillis) {
+		this.idleTimeoutMillis = Math.max(0, idleTimeoutMillis);
+		scheduleReaper();
+	}
 
 	@Override
 	public void processJob(final Job job) {
@@ -41,222 +215,885 @@ public class WebWorkerJobProcessor implements IJobProcessor {
 		if (tasks == null || tasks.length == 0) {
 			job.getCallback().onCompleted(tasks);
 		} else {
-			pendingJobs.add(new WebWorkerJob(job));
+			enqueueJob(new WebWorkerJob(job));
+		}
+	}
+
+	@Override
+	public void processStreamingJob(final StreamingJob job) {
+		if (!job.getSource().hasNext()) {
+			job.getCallback().onCompleted(0, 0);
+		} else {
+			enqueueJob(new WebWorkerJob(job));
+		}
+	}
+
+	private void enqueueJob(final WebWorkerJob webWorkerJob) {
+		if (tracer != null) {
+			webWorkerJob.traceTrack = tracer.newJobTrack();
+			webWorkerJob.enqueuedMillis = Duration.currentTimeMillis();
+		}
+		if (acceptJob(webWorkerJob)) {
+			pendingJobs.add(webWorkerJob);
+			metrics.onQueueDepth(pendingJobs.size());
 			launchTask();
 		}
 	}
 
 	/**
-	 * Start the next task if a worker is available.
+	 * Check if the processor has room for a new job.
+	 * 
+	 * @return <code>true</code> if a job submitted now would be queued without applying the overflow policy.
+	 */
+	public boolean isReadyToAccept() {
+		return pendingJobs.size() < maxPendingJobs;
+	}
+
+	/**
+	 * Register a callback to be triggered once the processor has room for a new job. If the processor is already ready
+	 * the callback is triggered immediately, else it is triggered once a pending job has completed.
+	 * 
+	 * @param callback The callback to trigger.
+	 */
+	public void whenReadyToAccept(IReadyToAcceptCallback callback) {
+		if (isReadyToAccept()) {
+			callback.onReadyToAccept();
+		} else {
+			readyCallbacks.add(callback);
+		}
+	}
+
+	/**
+	 * Apply the overflow policy if the pending jobs queue is full.
+	 * 
+	 * @param job The submitted job.
+	 * @return <code>true</code> if the job should be added to the pending jobs, <code>false</code> if it has already
+	 *         been processed.
+	 */
+	private boolean acceptJob(final WebWorkerJob webWorkerJob) {
+		if (isReadyToAccept()) {
+			return true;
+		}
+		switch (overflowPolicy) {
+		case CALLER_RUNS:
+			webWorkerJob.runInCallingThread();
+			return false;
+		case DROP_OLDEST:
+			// the first pending job is in progress, drop the oldest one that is still waiting.
+			if (pendingJobs.size() > 1) {
+				WebWorkerJob droppedJob = pendingJobs.remove(1);
+				LOGGER.warning("Job dropped as the queue is full");
+				droppedJob.drop();
+				return true;
+			}
+			// only the job in progress is pending and it can't be dropped.
+			throw new IllegalStateException("The job processor queue is full and the job in progress can't be "
+					+ "dropped (capacity <" + maxPendingJobs + ">).");
+		default:
+			throw new IllegalStateException("The job processor queue is full (capacity <" + maxPendingJobs + ">).");
+		}
+	}
+
+	/** Trigger the registered ready callbacks while the processor has room for new jobs. */
+	private void signalReadyToAccept() {
+		while (!readyCallbacks.isEmpty() && isReadyToAccept()) {
+			readyCallbacks.remove(0).onReadyToAccept();
+		}
+	}
+
+	/**
+	 * Start the next tasks while a worker is available.
 	 */
 	private void launchTask() {
 		if (pendingJobs.size() == 0) {
 			return; // if there is not more pending jobs then return.
 		}
-		if (currentActiveWorkers >= MAX_WORKERS) {
-			return; // if we launched already the maximum number of workers then don't launch now.
-		}
 		final WebWorkerJob webWorkerJob = pendingJobs.get(0);
+		if (!webWorkerJob.hasNextTask()) {
+			// all the tasks of the current job are launched.
+			speculate(webWorkerJob);
+			return;
+		}
+		final Task<?> nextTask = webWorkerJob.getNextTask();
 
-		final int taskIndex = webWorkerJob.getAndIncrementCurrentTaskIndex();
+		final String affinityKey = getAffinityWorkerKey(nextTask);
+		TaskWorker worker = affinityKey == null ? null : takeAffinityWorker(affinityKey);
+		if (worker != null) {
+			// the warm worker of the affinity key can process the task.
+		} else if (currentActiveWorkers < maxWorkers) {
+			worker = createWorker(nextTask);
+		} else {
+			// all workers are active, queue the task on a worker that has room for prefetching.
+			worker = findPrefetchWorker(nextTask);
+			if (worker == null) {
+				return;
+			}
+		}
+		if (affinityKey != null && !affinityWorkers.containsKey(affinityKey)) {
+			affinityWorkers.put(affinityKey, worker);
+		}
+		worker.start(webWorkerJob, webWorkerJob.getAndIncrementCurrentTaskIndex());
 
-		if (taskIndex < webWorkerJob.getJob().getTasks().length) {
-			final Task<?> currentTask = webWorkerJob.getJob().getTasks()[taskIndex];
+		// launch the next task
+		launchTask();
+	}
 
-			TaskWorker worker = createWorker(currentTask);
-			worker.start(webWorkerJob, taskIndex);
+	/** Launch copies of the outstanding idempotent tasks of a job on idle workers. */
+	private void speculate(final WebWorkerJob webWorkerJob) {
+		final Job job = webWorkerJob.getJob();
+		if (speculationThreshold < 0 || job == null
+				|| webWorkerJob.getCompletedTasks() < speculationThreshold * job.getTasks().length) {
+			return;
+		}
+		final Task<?>[] tasks = job.getTasks();
+		for (int i = 0; i < tasks.length && currentActiveWorkers < maxWorkers; i++) {
+			if (tasks[i] instanceof IIdempotentTask && !webWorkerJob.isTaskCompleted(i) && webWorkerJob.speculate(i)) {
+				if (LOGGER.isLoggable(Level.FINE)) {
+					LOGGER.fine("Launching a speculative copy of task " + (i + 1));
+				}
+				// idle workers are never running the task so the copy runs on another worker.
+				createWorker(tasks[i]).start(webWorkerJob, i);
+			}
+		}
+	}
 
-			// launch the next task
-			launchTask();
+	/** Terminate the workers that only run a copy of a task which result has been received. */
+	private void cancelSpeculativeCopies(final WebWorkerJob webWorkerJob, final int taskIndex) {
+		for (TaskWorker taskWorker : new ArrayList<TaskWorker>(this.activeWorkers)) {
+			if (taskWorker.inFlightTasks.size() == 1) {
+				InFlightTask inFlightTask = taskWorker.inFlightTasks.get(0);
+				if (inFlightTask.webWorkerJob == webWorkerJob && inFlightTask.taskIndex == taskIndex) {
+					taskWorker.inFlightTasks.clear();
+					this.currentActiveWorkers--;
+					this.activeWorkers.remove(taskWorker);
+					terminateWorker(taskWorker);
+				}
+			}
 		}
 	}
 
-	private TaskWorker createWorker(Task<?> task) {
-		String taskClassName = task.getClass().getName();
-		String workerName = taskClassName.substring(taskClassName.lastIndexOf(".") + 1);
-
-		List<TaskWorker> taskWorkers = this.hidleWorkers.get(workerName);
-		if (taskWorkers != null) {
-			if (taskWorkers.size() > 0) {
-				// return the worker for this class type.
-				this.currentHiddleWorkers--;
-				return taskWorkers.remove(0);
-			} else {
-				this.hidleWorkers.remove(workerName);
+	/**
+	 * Get the key of the worker bound to the affinity key of a task. Workers only process the tasks of their module, so
+	 * tasks of different classes with the same affinity key are bound to different workers.
+	 * 
+	 * @param task The task.
+	 * @return The key made of the task class and affinity key, <code>null</code> if the task has no affinity key.
+	 */
+	private static String getAffinityWorkerKey(Task<?> task) {
+		String affinityKey = task.getAffinityKey();
+		return affinityKey == null ? null : task.getClass().getName() + Task.TASK_ID_SEPARATOR + affinityKey;
+	}
+
+	/**
+	 * Get the worker bound to an affinity key if it can process a task now. Affinity is best effort: if the worker is
+	 * busy the task is processed by another worker.
+	 * 
+	 * @param affinityKey The affinity worker key of the task to launch (see {@link #getAffinityWorkerKey(Task)}).
+	 * @return The worker or <code>null</code> if no worker is bound to the key or if it can't process the task now.
+	 */
+	private TaskWorker takeAffinityWorker(String affinityKey) {
+		TaskWorker worker = affinityWorkers.get(affinityKey);
+		if (worker == null) {
+			return null;
+		}
+		if (worker.inFlightTasks.isEmpty()) {
+			if (currentActiveWorkers >= maxWorkers) {
+				return null;
 			}
+			// the worker is idle, remove it from the idle workers.
+			this.idleWorkers.remove(worker);
+			return worker;
 		}
+		return worker.inFlightTasks.size() < prefetchSize ? worker : null;
+	}
 
-		String workerPath = "../" + workerName + "/" + workerName + ".nocache.js";
+	/**
+	 * Find the active worker for the given task type that has the fewer tasks in flight.
+	 * 
+	 * @param task The task to launch.
+	 * @return The worker or <code>null</code> if no active worker can prefetch the task.
+	 */
+	private TaskWorker findPrefetchWorker(Task<?> task) {
+		String taskType = task.getClass().getName();
+		TaskWorker prefetchWorker = null;
+		for (TaskWorker activeWorker : this.activeWorkers) {
+			int inFlight = activeWorker.inFlightTasks.size();
+			if (inFlight < prefetchSize && activeWorker.taskType.equals(taskType)
+					&& (prefetchWorker == null || inFlight < prefetchWorker.inFlightTasks.size())) {
+				prefetchWorker = activeWorker;
+			}
+		}
+		return prefetchWorker;
+	}
+
+	/**
+	 * Get the url of the script of a worker module.
+	 * 
+	 * @param workerName The name of the worker GWT module.
+	 * @return The url of the worker script.
+	 */
+	static String getWorkerPath(String workerName) {
+		String workerUrl = WORKER_URLS.get(workerName);
+		return workerUrl == null ? "../" + workerName + "/" + workerName + ".nocache.js" : workerUrl;
+	}
+
+	/**
+	 * Get the url of the script of the worker module that process a task: the url registered for the task class, else
+	 * the url of the module named after the simple name of the class (see {@link #getWorkerName(Task)}).
+	 * 
+	 * @param task The task to process.
+	 * @return The url of the worker script.
+	 */
+	static String getWorkerPath(Task<?> task) {
+		String workerUrl = TASK_WORKER_URLS.get(task.getClass().getName());
+		return workerUrl == null ? getWorkerPath(getWorkerName(task)) : workerUrl;
+	}
+
+	/**
+	 * Register the url of the script of a worker module, for example the content hashed script emitted by the
+	 * SingleScriptWorkerLinker. Workers without a registered url are loaded from their nocache.js script.
+	 * 
+	 * @param workerName The name of the worker GWT module.
+	 * @param workerUrl The url of the worker script, <code>null</code> to use the default one.
+	 */
+	public static void registerWorkerUrl(String workerName, String workerUrl) {
+		if (workerUrl == null) {
+			WORKER_URLS.remove(workerName);
+		} else {
+			WORKER_URLS.put(workerName, workerUrl);
+		}
+	}
+
+	/**
+	 * Register the url of the script of the worker module that process a task class. As worker modules are named after
+	 * the simple name of the task class by default, tasks with the same simple name in different packages must be
+	 * compiled in modules with different names and registered with this method.
+	 * 
+	 * @param taskClass The class of the task.
+	 * @param workerUrl The url of the worker script, <code>null</code> to use the one of the module named after the
+	 *            simple name of the class.
+	 */
+	public static void registerWorkerUrl(Class<?> taskClass, String workerUrl) {
+		if (workerUrl == null) {
+			TASK_WORKER_URLS.remove(taskClass.getName());
+		} else {
+			TASK_WORKER_URLS.put(taskClass.getName(), workerUrl);
+		}
+	}
+
+	/**
+	 * Get the name of the worker GWT module that process a task.
+	 * 
+	 * @param task The task to process.
+	 * @return The name of the default worker module (the simple name of the task class), the worker url may be
+	 *         registered per class with {@link #registerWorkerUrl(Class, String)}.
+	 */
+	static String getWorkerName(Task<?> task) {
+		String taskClassName = task.getClass().getName();
+		return taskClassName.substring(taskClassName.lastIndexOf(".") + 1);
+	}
+
+	private TaskWorker createWorker(Task<?> task) {
+		// workers are pooled by class as tasks with the same simple name may be processed by different modules.
+		String taskType = task.getClass().getName();
+		TaskWorker idleWorker = this.idleWorkers.take(taskType);
+		if (idleWorker != null) {
+			return idleWorker;
+		}
+
+		String workerName = getWorkerName(task);
+		String workerPath = getWorkerPath(task);
 		if (LOGGER.isLoggable(Level.FINER)) {
 			LOGGER.finer("Loading worker from " + workerPath);
 		}
 		Worker worker = Worker.create(workerPath);
-		TaskWorker taskWorker = new TaskWorker(worker, workerName);
+		for (String broadcastMessage : broadcastMessages.values()) {
+			worker.postMessage(broadcastMessage);
+		}
+		if (tracer != null) {
+			worker.postMessage(Task.TASK_TRACE_FLAG + "1");
+		}
+		TaskWorker taskWorker = new TaskWorker(worker, workerName, taskType);
+		metrics.onWorkerSpawned(workerName);
 
-		if (MAX_WORKERS <= (currentActiveWorkers + currentHiddleWorkers)) {
-			removeIdleWorker();
+		if (maxWorkers <= (currentActiveWorkers + this.idleWorkers.size())) {
+			TaskWorker evictedWorker = this.idleWorkers.evict();
+			if (evictedWorker != null) {
+				terminateWorker(evictedWorker);
+			}
 		}
 
 		return taskWorker;
 	}
 
-	/** Add a {@link TaskWorker} to the list of hiddle workers. */
-	private void addIdleWorkers(final TaskWorker taskWorker) {
-		List<TaskWorker> taskWorkers = this.hidleWorkers.get(taskWorker.workerName);
-		if (taskWorkers == null) {
-			taskWorkers = new ArrayList<WebWorkerJobProcessor.TaskWorker>();
-			this.hidleWorkers.put(taskWorker.workerName, taskWorkers);
-		}
-		taskWorkers.add(taskWorker);
-		this.currentHiddleWorkers++;
-	}
-
-	/** Remove one of the hiddle workers. */
-	private void removeIdleWorker() {
-		boolean removed = false;
-		Iterator<Entry<String, List<TaskWorker>>> iterator = this.hidleWorkers.entrySet().iterator();
-		while (iterator.hasNext() && !removed) {
-			Entry<String, List<TaskWorker>> entry = iterator.next();
-			List<TaskWorker> taskWorkers = entry.getValue();
-			if (taskWorkers.size() > 0) {
-				TaskWorker taskWorker = taskWorkers.remove(0);
-				taskWorker.worker.terminate();
-				this.currentHiddleWorkers--;
-				removed = true;
-			}
-			if (taskWorkers.isEmpty()) {
-				this.hidleWorkers.remove(entry.getKey());
-			}
+	/** Add a {@link TaskWorker} to the idle workers. */
+	private void addIdleWorker(final TaskWorker taskWorker) {
+		this.idleWorkers.put(taskWorker.taskType, taskWorker, Duration.currentTimeMillis());
+		scheduleReaper();
+	}
+
+	/** Schedule the periodic termination of the workers idle for too long, while there are idle workers. */
+	private void scheduleReaper() {
+		if (reaperScheduled || idleTimeoutMillis <= 0 || this.idleWorkers.size() == 0) {
+			return;
 		}
+		reaperScheduled = true;
+		Scheduler.get().scheduleFixedDelay(new RepeatingCommand() {
+			@Override
+			public boolean execute() {
+				double idleSince = Duration.currentTimeMillis() - idleTimeoutMillis;
+				TaskWorker taskWorker;
+				while (idleTimeoutMillis > 0 && (taskWorker = idleWorkers.evictIdleSince(idleSince)) != null) {
+					if (LOGGER.isLoggable(Level.FINE)) {
+						LOGGER.fine("Terminating idle worker " + taskWorker.workerName);
+					}
+					terminateWorker(taskWorker);
+				}
+				reaperScheduled = idleTimeoutMillis > 0 && idleWorkers.size() > 0;
+				return reaperScheduled;
+			}
+		}, idleTimeoutMillis);
+	}
+
+	/** Terminate a worker and remove it's affinity keys. */
+	private void terminateWorker(TaskWorker taskWorker) {
+		taskWorker.worker.terminate();
+		metrics.onWorkerTerminated(taskWorker.workerName);
+		this.affinityWorkers.values().removeAll(Collections.singleton(taskWorker));
 	}
 
-	private void processWorkerMessage(final String messageStr, final WebWorkerJob webWorkerJob, final int taskIndex) {
+	private void processWorkerMessage(final TaskWorker taskWorker, final String messageStr) {
 		if (LOGGER.isLoggable(Level.FINER)) {
 			LOGGER.finer("Message received from worker <" + messageStr + ">");
 		}
-		final Task<?> sourceTask = webWorkerJob.job.getTasks()[taskIndex];
+		if (messageStr.startsWith(Task.TASK_LOG_FLAG)) {
+			String data = messageStr.substring(Task.TASK_LOG_FLAG.length());
+			LOGGER.info(data);
+			return;
+		}
+		if (messageStr.startsWith(Task.TASK_TRACE_FLAG)) {
+			traceWorkerTimings(taskWorker, messageStr);
+			return;
+		}
+		taskWorker.bootstrapped = true;
+
+		final boolean success = messageStr.startsWith(Task.TASK_COMPLETED_FLAG);
+		if (!success && !messageStr.startsWith(Task.TASK_ERROR_FLAG)) {
+			LOGGER.warning("Received unexpected message from Web worker " + messageStr);
+			return;
+		}
+		final int flagLength = success ? Task.TASK_COMPLETED_FLAG.length() : Task.TASK_ERROR_FLAG.length();
+		final int separatorIndex = messageStr.indexOf(Task.TASK_ID_SEPARATOR, flagLength);
+		final InFlightTask inFlightTask = separatorIndex < 0 ? null : taskWorker.completeTask(Integer
+				.parseInt(messageStr.substring(flagLength, separatorIndex)));
+		if (inFlightTask == null) {
+			LOGGER.warning("Received message for an unknown task from Web worker " + messageStr);
+			return;
+		}
+		final String data = messageStr.substring(separatorIndex + 1);
+		final double receivedMillis = metrics != JobProcessorMetrics.NO_OP ? Duration.currentTimeMillis() : 0;
+		if (frameBudgetMillis > 0) {
+			receivedResults.add(new ReceivedResult(inFlightTask, success, data, messageStr.length(), receivedMillis));
+			scheduleDelivery();
+		} else {
+			deliverResult(inFlightTask, success, data, messageStr.length(), receivedMillis);
+		}
+		// the worker may process another task.
+		launchTask();
+	}
 
-		if (messageStr.startsWith(Task.TASK_COMPLETED_FLAG)) {
-			currentActiveWorkers--;
-			String data = messageStr.substring(Task.TASK_COMPLETED_FLAG.length());
+	/** Record the spans of a task processed by a worker from the timings it has sent. */
+	private void traceWorkerTimings(final TaskWorker taskWorker, final String messageStr) {
+		final JobTracer currentTracer = tracer;
+		final int flagLength = Task.TASK_TRACE_FLAG.length();
+		final int separatorIndex = messageStr.indexOf(Task.TASK_ID_SEPARATOR, flagLength);
+		if (currentTracer == null || separatorIndex < 0) {
+			return;
+		}
+		String[] timings = messageStr.substring(separatorIndex + 1).split(",");
+		if (timings.length != 4) {
+			LOGGER.warning("Received unexpected timings from Web worker " + messageStr);
+			return;
+		}
+		double readStart = Double.parseDouble(timings[0]);
+		double executeStart = Double.parseDouble(timings[1]);
+		double writeStart = Double.parseDouble(timings[2]);
+		double end = Double.parseDouble(timings[3]);
+		if (!taskWorker.bootstrapped) {
+			// the first task starts once the worker script is loaded.
+			currentTracer.addSpan(taskWorker.traceTrack, "bootstrap", JobTracer.CATEGORY_WORKER,
+					taskWorker.createdMillis, readStart);
+		}
+		InFlightTask inFlightTask = taskWorker.getInFlightTask(Integer.parseInt(messageStr.substring(flagLength,
+				separatorIndex)));
+		String taskName = inFlightTask == null ? "execute" : JobTracer.getTaskName(inFlightTask.webWorkerJob
+				.getTask(inFlightTask.taskIndex));
+		currentTracer.addSpan(taskWorker.traceTrack, "deserialize", JobTracer.CATEGORY_MESSAGE, readStart,
+				executeStart);
+		currentTracer.addSpan(taskWorker.traceTrack, taskName, JobTracer.CATEGORY_TASK, executeStart, writeStart);
+		currentTracer.addSpan(taskWorker.traceTrack, "serialize", JobTracer.CATEGORY_MESSAGE, writeStart, end);
+	}
 
-			if (sourceTask instanceof JsonSerializable) {
-				webWorkerJob.results[taskIndex] = this.serializer.deSerialize(data);
+	/** Request an animation frame to deliver the received results if not already requested. */
+	private void scheduleDelivery() {
+		if (deliveryScheduled) {
+			return;
+		}
+		deliveryScheduled = true;
+		AnimationScheduler.get().requestAnimationFrame(new AnimationCallback() {
+			@Override
+			public void execute(double timestamp) {
+				deliveryScheduled = false;
+				deliverReceivedResults();
 			}
+		});
+	}
 
-			// check if the job is completed.
-			int completedTasks = webWorkerJob.incrementAndGetCompletedTasks(true);
-			if (LOGGER.isLoggable(Level.FINE)) {
-				LOGGER.fine("Task successfull  total completed <" + completedTasks + "> on <"
-						+ webWorkerJob.getJob().getTasks().length + ">");
+	/** Deliver the received results until the frame budget is spent. */
+	private void deliverReceivedResults() {
+		final double start = Duration.currentTimeMillis();
+		while (!receivedResults.isEmpty()) {
+			ReceivedResult received = receivedResults.removeFirst();
+			deliverResult(received.inFlightTask, received.success, received.data, received.messageLength,
+					received.receivedMillis);
+			if (frameBudgetMillis > 0 && Duration.currentTimeMillis() - start >= frameBudgetMillis) {
+				break;
 			}
-			if (webWorkerJob.getJob().getTasks().length == completedTasks) {
-				pendingJobs.remove(0);
-				webWorkerJob.getJob().getCallback().onCompleted(webWorkerJob.results);
+		}
+		if (!receivedResults.isEmpty()) {
+			scheduleDelivery();
+		}
+		// completed jobs may let the next pending job start.
+		launchTask();
+	}
+
+	/**
+	 * Deserialize the result of a task and register it in it's job, the job callback is triggered once all the tasks
+	 * are completed.
+	 */
+	private void deliverResult(final InFlightTask inFlightTask, final boolean success, final String data,
+			final int messageLength, final double receivedMillis) {
+		final WebWorkerJob webWorkerJob = inFlightTask.webWorkerJob;
+		final int taskIndex = inFlightTask.taskIndex;
+		if (webWorkerJob.isTaskCompleted(taskIndex)) {
+			// a copy of the task has already completed.
+			return;
+		}
+		final JobTracer currentTracer = tracer;
+		final double deliverStart = currentTracer != null ? Duration.currentTimeMillis() : 0;
+		final Task<?> sourceTask = webWorkerJob.getTask(taskIndex);
+		final boolean metered = metrics != JobProcessorMetrics.NO_OP;
+
+		Object result = null;
+		if (success) {
+			if (sourceTask instanceof IPooledTask) {
+				result = ((IPooledTask) sourceTask).readResult(data);
+			} else if (sourceTask instanceof JsonSerializable) {
+				double deserializationStart = metered ? Duration.currentTimeMillis() : 0;
+				result = this.serializer.deSerialize(data);
+				if (metered) {
+					metrics.onMessageReceived(sourceTask.getClass().getName(), Duration.currentTimeMillis()
+							- deserializationStart, messageLength);
+				}
 			}
-			launchTask();
-		} else if (messageStr.startsWith(Task.TASK_ERROR_FLAG)) {
-			currentActiveWorkers--;
-			String data = messageStr.substring(Task.TASK_ERROR_FLAG.length());
+		} else {
 			LOGGER.severe("Task <" + sourceTask.getClass().getName() + "> failed with message <" + data + ">");
-			int completedTasks = webWorkerJob.incrementAndGetCompletedTasks(false);
-			if (webWorkerJob.getJob().getTasks().length == completedTasks) {
-				pendingJobs.remove(0);
-				webWorkerJob.getJob().getCallback().onCompleted(webWorkerJob.getJob().getTasks());
+		}
+		if (metered) {
+			metrics.onTaskCompleted(sourceTask.getClass().getName(), receivedMillis - inFlightTask.startMillis,
+					success);
+			metrics.onWorkers(currentActiveWorkers, idleWorkers.size());
+		}
+
+		// check if the job is completed.
+		boolean jobCompleted = webWorkerJob.onTaskCompleted(taskIndex, result, success);
+		if (LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.fine("Task completed, total completed <" + webWorkerJob.getCompletedTasks() + ">");
+		}
+		if (webWorkerJob.isSpeculated(taskIndex)) {
+			cancelSpeculativeCopies(webWorkerJob, taskIndex);
+		}
+		if (jobCompleted) {
+			pendingJobs.remove(webWorkerJob);
+			webWorkerJob.complete(success);
+			signalReadyToAccept();
+		}
+		if (currentTracer != null) {
+			double end = Duration.currentTimeMillis();
+			currentTracer.addSpan(JobTracer.MAIN_TRACK, "deliver", JobTracer.CATEGORY_MESSAGE, deliverStart, end);
+			if (jobCompleted && webWorkerJob.traceTrack != null) {
+				currentTracer.addSpan(webWorkerJob.traceTrack, "job", JobTracer.CATEGORY_JOB,
+						webWorkerJob.enqueuedMillis, end);
+				currentTracer.addSpan(webWorkerJob.traceTrack, "queued", JobTracer.CATEGORY_JOB,
+						webWorkerJob.enqueuedMillis, webWorkerJob.startedMillis);
 			}
-		} else if (messageStr.startsWith(Task.TASK_LOG_FLAG)) {
-			String data = messageStr.substring(Task.TASK_LOG_FLAG.length());
-			LOGGER.info(data);
-		} else {
-			LOGGER.warning("Received unexpected message from Web worker " + messageStr);
+		}
+	}
+
+	/** A result received from a worker and waiting for the next animation frame to be delivered. */
+	static class ReceivedResult {
+		private final InFlightTask inFlightTask;
+		private final boolean success;
+		private final String data;
+		private final int messageLength;
+		private final double receivedMillis;
+
+		public ReceivedResult(InFlightTask inFlightTask, boolean success, String data, int messageLength,
+				double receivedMillis) {
+			this.inFlightTask = inFlightTask;
+			this.success = success;
+			this.data = data;
+			this.messageLength = messageLength;
+			this.receivedMillis = receivedMillis;
+		}
+	}
+
+	/** A task sent to a worker and which result has not been received yet. */
+	static class InFlightTask {
+		private final int taskId;
+		private final WebWorkerJob webWorkerJob;
+		private final int taskIndex;
+		private final double startMillis;
+
+		public InFlightTask(int taskId, WebWorkerJob webWorkerJob, int taskIndex, double startMillis) {
+			this.taskId = taskId;
+			this.webWorkerJob = webWorkerJob;
+			this.taskIndex = taskIndex;
+			this.startMillis = startMillis;
 		}
 	}
 
 	class TaskWorker implements MessageHandler {
 		private final Worker worker;
 		private final String workerName;
+		// fully qualified name of the class of the tasks processed by the worker.
+		private final String taskType;
+		private final String traceTrack;
+		private final double createdMillis;
+		// true once the worker has sent a message, it's script is loaded.
+		private boolean bootstrapped = false;
 
-		private WebWorkerJob currentJob;
-		private int currentTaskIndex;
+		// tasks sent to the worker, in sending order.
+		private final List<InFlightTask> inFlightTasks = new ArrayList<InFlightTask>();
+		// the last shared memory job which memory has been posted to the worker.
+		private SharedMemoryJob sharedMemoryJob;
 
 		/**
 		 * Create a new task worker.
 		 * 
 		 * @param worker The web-worker reference.
 		 * @param workerName The name of the web-worker.
+		 * @param taskType The class name of the tasks processed by the web-worker.
 		 */
-		public TaskWorker(final Worker worker, final String workerName) {
+		public TaskWorker(final Worker worker, final String workerName, final String taskType) {
 			this.worker = worker;
 			this.workerName = workerName;
+			this.taskType = taskType;
+			this.traceTrack = workerName + " #" + (++WebWorkerJobProcessor.this.nextWorkerTraceId);
+			this.createdMillis = Duration.currentTimeMillis();
 			this.worker.setOnMessage(this);
 		}
 
 		/**
-		 * Start to process the given task.
+		 * Send the given task to the worker. The worker processes it as soon as the tasks previously sent are
+		 * completed.
 		 * 
 		 * @param workerJob The job that contains the task.
 		 * @param taskIndex The index of the task in the job's task list.
 		 */
 		public void start(final WebWorkerJob workerJob, final int taskIndex) {
-			this.currentJob = workerJob;
-			this.currentTaskIndex = taskIndex;
+			if (this.inFlightTasks.isEmpty()) {
+				WebWorkerJobProcessor.this.currentActiveWorkers++;
+				WebWorkerJobProcessor.this.activeWorkers.add(this);
+			}
+			JobProcessorMetrics metrics = WebWorkerJobProcessor.this.metrics;
+			JobTracer tracer = WebWorkerJobProcessor.this.tracer;
+			boolean metered = metrics != JobProcessorMetrics.NO_OP;
+			double startMillis = metered || tracer != null ? Duration.currentTimeMillis() : 0;
+			if (tracer != null && workerJob.startedMillis < 0) {
+				workerJob.startedMillis = startMillis;
+			}
+			int taskId = WebWorkerJobProcessor.this.nextTaskId++;
+			this.inFlightTasks.add(new InFlightTask(taskId, workerJob, taskIndex, startMillis));
 
-			WebWorkerJobProcessor.this.currentActiveWorkers++;
-			Task<?> currentTask = this.currentJob.getJob().getTasks()[this.currentTaskIndex];
-			if (currentTask instanceof JsonSerializable) {
-				this.worker.postMessage(WebWorkerJobProcessor.this.serializer.serialize(currentTask));
+			Task<?> currentTask = workerJob.getTask(taskIndex);
+			if (workerJob.getJob() instanceof SharedMemoryJob && workerJob.getJob() != sharedMemoryJob) {
+				// the shared memory is posted once per worker and not copied.
+				sharedMemoryJob = (SharedMemoryJob) workerJob.getJob();
+				this.worker.postMessage(sharedMemoryJob.getSharedMemoryMessage());
+			}
+			String idPrefix = taskId + String.valueOf(Task.TASK_ID_SEPARATOR);
+			if (currentTask instanceof IPooledTask) {
+				StringBuilder buffer = WebWorkerJobProcessor.this.messageBuffer;
+				buffer.setLength(0);
+				buffer.append(idPrefix);
+				((IPooledTask) currentTask).writeParameters(buffer);
+				String message = buffer.toString();
+				if (metered) {
+					metrics.onMessageSent(currentTask.getClass().getName(), Duration.currentTimeMillis()
+							- startMillis, message.length());
+				}
+				this.worker.postMessage(message);
+			} else if (currentTask instanceof JsonSerializable) {
+				String message = idPrefix + WebWorkerJobProcessor.this.serializer.serialize(currentTask);
+				if (metered) {
+					metrics.onMessageSent(currentTask.getClass().getName(), Duration.currentTimeMillis()
+							- startMillis, message.length());
+				}
+				this.worker.postMessage(message);
 			} else {
-				this.worker.postMessage("start!");
+				this.worker.postMessage(idPrefix + "start!");
+			}
+			if (tracer != null) {
+				tracer.addSpan(JobTracer.MAIN_TRACK, "send", JobTracer.CATEGORY_MESSAGE, startMillis,
+						Duration.currentTimeMillis());
 			}
 			if (LOGGER.isLoggable(Level.FINER)) {
-				LOGGER.finer("Task " + (taskIndex + 1) + " / " + this.currentJob.getJob().getTasks().length
-						+ " started!");
+				LOGGER.finer("Task " + (taskIndex + 1) + " started!");
 			}
 		}
 
-		@Override
-		public void onMessage(MessageEvent event) {
-			addIdleWorkers(this);
-			// The worker has completed it's task
-			processWorkerMessage(event.getDataAsString(), currentJob, currentTaskIndex);
+		/**
+		 * Get a task from the in flight tasks.
+		 * 
+		 * @param taskId The id of the task.
+		 * @return The in flight task or <code>null</code> if the worker doesn't process a task with the given id.
+		 */
+		private InFlightTask getInFlightTask(int taskId) {
+			for (InFlightTask inFlightTask : this.inFlightTasks) {
+				if (inFlightTask.taskId == taskId) {
+					return inFlightTask;
+				}
+			}
+			return null;
 		}
 
-		public WebWorkerJob getCurrentJob() {
-			return currentJob;
+		/**
+		 * Remove a task from the in flight tasks, the worker becomes idle when it has no more tasks in flight.
+		 * 
+		 * @param taskId The id of the completed task.
+		 * @return The in flight task or <code>null</code> if the worker doesn't process a task with the given id.
+		 */
+		private InFlightTask completeTask(int taskId) {
+			for (int i = 0; i < this.inFlightTasks.size(); i++) {
+				if (this.inFlightTasks.get(i).taskId == taskId) {
+					InFlightTask inFlightTask = this.inFlightTasks.remove(i);
+					if (this.inFlightTasks.isEmpty()) {
+						WebWorkerJobProcessor.this.currentActiveWorkers--;
+						WebWorkerJobProcessor.this.activeWorkers.remove(this);
+						addIdleWorker(this);
+					}
+					return inFlightTask;
+				}
+			}
+			return null;
 		}
 
-		public int getCurrentTaskIndex() {
-			return currentTaskIndex;
+		@Override
+		public void onMessage(MessageEvent event) {
+			processWorkerMessage(this, event.getDataAsString());
 		}
 	}
 
+	/** A {@link Job} or a {@link StreamingJob} in progress. */
 	class WebWorkerJob {
 		private final Job job;
+		private final StreamingJob streamingJob;
 		private final Object[] results;
+		private final boolean[] completedTasks;
+		// tasks which copies have been launched by the speculative execution.
+		private final boolean[] speculatedTasks;
+		// tasks of a streaming job that are launched and not completed yet.
+		private final Map<Integer, Task<?>> launchedTasks;
+		// next task pulled from the source of a streaming job and not launched yet.
+		private Task<?> nextStreamingTask;
 		private int currentTaskIndex = 0;
 		private int successTasks = 0;
 		private int failedTasks = 0;
+		// track of the job in the tracer, null if not traced.
+		private String traceTrack;
+		private double enqueuedMillis;
+		private double startedMillis = -1;
 
 		public WebWorkerJob(final Job job) {
 			this.job = job;
+			this.streamingJob = null;
 			this.results = new Object[job.getTasks().length];
+			this.completedTasks = new boolean[results.length];
+			this.speculatedTasks = new boolean[results.length];
+			this.launchedTasks = null;
+		}
+
+		public WebWorkerJob(final StreamingJob streamingJob) {
+			this.job = null;
+			this.streamingJob = streamingJob;
+			this.results = null;
+			this.completedTasks = null;
+			this.speculatedTasks = null;
+			this.launchedTasks = new HashMap<Integer, Task<?>>();
 		}
 
+		/**
+		 * @return The job or <code>null</code> for a streaming job.
+		 */
 		public Job getJob() {
 			return job;
 		}
 
+		public boolean hasNextTask() {
+			if (job != null) {
+				return currentTaskIndex < job.getTasks().length;
+			}
+			return nextStreamingTask != null || streamingJob.getSource().hasNext();
+		}
+
+		/**
+		 * Get the next task to launch, the task is pulled from the source of a streaming job.
+		 */
+		public Task<?> getNextTask() {
+			if (job != null) {
+				return job.getTasks()[currentTaskIndex];
+			}
+			if (nextStreamingTask == null) {
+				nextStreamingTask = streamingJob.getSource().next();
+			}
+			return nextStreamingTask;
+		}
+
 		public int getAndIncrementCurrentTaskIndex() {
+			if (streamingJob != null) {
+				launchedTasks.put(currentTaskIndex, getNextTask());
+				nextStreamingTask = null;
+			}
 			return currentTaskIndex++;
 		}
 
-		public int incrementAndGetCompletedTasks(boolean success) {
+		/**
+		 * Get a task that is launched.
+		 */
+		public Task<?> getTask(int taskIndex) {
+			return job != null ? job.getTasks()[taskIndex] : launchedTasks.get(taskIndex);
+		}
+
+		public boolean isTaskCompleted(int taskIndex) {
+			return job != null ? completedTasks[taskIndex] : !launchedTasks.containsKey(taskIndex);
+		}
+
+		public boolean isSpeculated(int taskIndex) {
+			return speculatedTasks != null && speculatedTasks[taskIndex];
+		}
+
+		/**
+		 * Mark a task as speculated.
+		 * 
+		 * @return <code>false</code> if a copy of the task has already been launched.
+		 */
+		public boolean speculate(int taskIndex) {
+			if (speculatedTasks[taskIndex]) {
+				return false;
+			}
+			speculatedTasks[taskIndex] = true;
+			return true;
+		}
+
+		public int getCompletedTasks() {
+			return successTasks + failedTasks;
+		}
+
+		/**
+		 * Register the result of a task.
+		 * 
+		 * @return <code>true</code> if all the tasks of the job are completed.
+		 */
+		public boolean onTaskCompleted(int taskIndex, Object result, boolean success) {
 			if (success) {
 				successTasks++;
 			} else {
 				failedTasks++;
 			}
-			return successTasks + failedTasks;
+			if (job != null) {
+				results[taskIndex] = result;
+				completedTasks[taskIndex] = true;
+				return getCompletedTasks() == results.length;
+			}
+			// results of streaming jobs are not kept.
+			launchedTasks.remove(taskIndex);
+			streamingJob.getCallback().onTaskCompleted(taskIndex, result, success);
+			return launchedTasks.isEmpty() && !hasNextTask();
+		}
+
+		/**
+		 * Trigger the job callback once all the tasks are completed.
+		 * 
+		 * @param success <code>true</code> if the last completed task succeeded.
+		 */
+		public void complete(boolean success) {
+			if (job == null) {
+				streamingJob.getCallback().onCompleted(getCompletedTasks(), successTasks);
+			} else if (success) {
+				job.getCallback().onCompleted(results);
+			} else {
+				job.getCallback().onCompleted(job.getTasks());
+			}
+		}
+
+		/**
+		 * Trigger the job callback for a job that is dropped before completion, as a failed job: the tasks are given
+		 * instead of the results, and the remaining tasks of a streaming job are reported as failed.
+		 */
+		public void drop() {
+			if (job == null) {
+				if (nextStreamingTask != null) {
+					nextStreamingTask = null;
+					onTaskCompleted(currentTaskIndex++, null, false);
+				}
+				while (streamingJob.getSource().hasNext()) {
+					streamingJob.getSource().next();
+					onTaskCompleted(currentTaskIndex++, null, false);
+				}
+				streamingJob.getCallback().onCompleted(getCompletedTasks(), successTasks);
+			} else {
+				job.getCallback().onCompleted(job.getTasks());
+			}
+		}
+
+		/**
+		 * Process all the tasks of the job in the calling thread. A failed task doesn't stop the job, the results are
+		 * registered and the job completed as the results of the workers.
+		 */
+		public void runInCallingThread() {
+			final JobTracer currentTracer = tracer;
+			final boolean metered = metrics != JobProcessorMetrics.NO_OP;
+			startedMillis = Duration.currentTimeMillis();
+			boolean jobCompleted = false;
+			while (!jobCompleted && hasNextTask()) {
+				final Task<?> task = getNextTask();
+				final int taskIndex = getAndIncrementCurrentTaskIndex();
+				final double start = Duration.currentTimeMillis();
+				Object result = null;
+				boolean success = false;
+				try {
+					result = task.execute();
+					success = true;
+				} catch (Throwable t) {
+					LOGGER.log(Level.SEVERE, "Error while processing task", t);
+				}
+				final double end = Duration.currentTimeMillis();
+				if (metered) {
+					metrics.onTaskCompleted(task.getClass().getName(), end - start, success);
+				}
+				if (currentTracer != null) {
+					currentTracer.addSpan(JobTracer.MAIN_TRACK, JobTracer.getTaskName(task), JobTracer.CATEGORY_TASK,
+							start, end);
+				}
+				jobCompleted = onTaskCompleted(taskIndex, result, success);
+			}
+			complete(failedTasks == 0);
+			if (currentTracer != null && traceTrack != null) {
+				double end = Duration.currentTimeMillis();
+				currentTracer.addSpan(traceTrack, "job", JobTracer.CATEGORY_JOB, enqueuedMillis, end);
+				currentTracer.addSpan(traceTrack, "queued", JobTracer.CATEGORY_JOB, enqueuedMillis, startedMillis);
+			}
 		}
 	}
 }
\ No newline at end of file
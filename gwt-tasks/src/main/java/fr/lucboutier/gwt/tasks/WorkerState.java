@@ -0,0 +1,37 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * State kept by a worker between the tasks it processes: a web worker for the {@link WebWorkerJobProcessor} or a thread
+ * for the {@link ThreadJobProcessor}. A state is created for each task class and initialized by
+ * {@link Task#onWorkerInit(WorkerState)}, tasks can then use it to reuse expensive objects (lookup tables, compiled
+ * patterns, decoded models...).
+ * 
+ * @author luc boutier
+ */
+public class WorkerState {
+	private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+	/**
+	 * Get an attribute of the state.
+	 * 
+	 * @param name The name of the attribute.
+	 * @return The value of the attribute or <code>null</code> if not defined.
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V get(String name) {
+		return (V) attributes.get(name);
+	}
+
+	/**
+	 * Set an attribute of the state.
+	 * 
+	 * @param name The name of the attribute.
+	 * @param value The value of the attribute.
+	 */
+	public void put(String name, Object value) {
+		attributes.put(name, value);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package fr.lucboutier.gwt.tasks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The states of a worker that processes several types of tasks (a thread or the main thread), one state per task
+ * class.
+ * 
+ * @author luc boutier
+ */
+class WorkerStates {
+	private final Map<Class<?>, WorkerState> states = new HashMap<Class<?>, WorkerState>();
+
+	/**
+	 * Bind the state of the task class to the task, the state is initialized on the first task of the class.
+	 * 
+	 * @param task The task to be processed.
+	 */
+	void bind(Task<?> task) {
+		WorkerState state = states.get(task.getClass());
+		if (state == null) {
+			state = new WorkerState();
+			task.onWorkerInit(state);
+			states.put(task.getClass(), state);
+		}
+		task.setWorkerState(state);
+	}
+}
\ No newline at end of file